@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster
+
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.zip.CRC32
+import java.util.zip.CheckedInputStream
+
+/**
+ * A zip archive of a tree, kept on disk, with the entries compressed once and for all.
+ * When the archive gets written out to a stream, the entries are put under a root
+ * directory of choice and copied without being compressed again. Only the files that
+ * are replaced by customized versions get compressed at that time.
+ */
+class CachedArchive private constructor(val file: Path, private val entries: List<IndexEntry>) {
+
+    private class IndexEntry(val entry: RawZipWriter.Entry, val dataOffset: Long)
+
+    /**
+     * Writes the archive to the stream with all the entries placed in the root directory.
+     * The customized files, indexed by their path relative to the root, replace the
+     * entries with the same path or are added when there is no such entry.
+     * The [OutputStream] isn't closed.
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun writeTo(os: OutputStream, root: String, customizedFiles: Map<String, ByteArray> = emptyMap()) {
+        val writer = RawZipWriter(os)
+        val prefix = "$root/"
+        writer.writeDirectory(prefix)
+        val remaining = customizedFiles.toMutableMap()
+        FileChannel.open(file, StandardOpenOption.READ).use { channel ->
+            for (ie in entries) {
+                val e = ie.entry
+                val custom = remaining.remove(e.name)
+                if (custom != null) {
+                    writer.write(prefix + e.name, custom, e.mode)
+                } else {
+                    writer.writeRaw(RawZipWriter.Entry(prefix + e.name, e.method, e.crc, e.compressedSize, e.size, e.mode,
+                            e.lastModified)) { out ->
+                        transfer(channel, ie.dataOffset, e.compressedSize, out)
+                    }
+                }
+            }
+        }
+        for ((path, data) in remaining) {
+            writer.write(prefix + path, data)
+        }
+        writer.finish()
+    }
+
+    companion object {
+        /**
+         * Builds an archive file for the given tree, using the manifest that was made for it
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun build(file: Path, sourceDir: Path, manifest: FileManifest): CachedArchive {
+            val tmpFile = Files.createTempFile(file.toAbsolutePath().parent, file.fileName.toString(), ".tmp")
+            try {
+                Files.newOutputStream(tmpFile).use { os ->
+                    val writer = RawZipWriter(os)
+                    for (e in manifest.entries) {
+                        if (e.isDirectory) {
+                            writer.writeDirectory(e.path + "/", DIRECTORY_TYPE or e.mode, e.lastModified)
+                        } else {
+                            val crc = CRC32()
+                            val compressed = CheckedInputStream(Files.newInputStream(sourceDir.resolve(e.path)), crc).use {
+                                RawZipWriter.deflate(it)
+                            }
+                            val entry = RawZipWriter.Entry(e.path, RawZipWriter.DEFLATED, crc.value,
+                                    compressed.size.toLong(), e.size, FILE_TYPE or e.mode, e.lastModified)
+                            writer.writeRaw(entry) { it.write(compressed) }
+                        }
+                    }
+                    writer.finish()
+                }
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                Files.deleteIfExists(tmpFile)
+            }
+            return open(file) ?: throw IOException("Couldn't read back archive $file")
+        }
+
+        /**
+         * Opens an archive file that was written by [build], returns `null` if the
+         * file doesn't exist or can't be read
+         */
+        @JvmStatic
+        fun open(file: Path): CachedArchive? {
+            if (!Files.isRegularFile(file)) {
+                return null
+            }
+            return try {
+                FileChannel.open(file, StandardOpenOption.READ).use { channel ->
+                    // We never write archive comments, so the end record is at the very end
+                    val end = read(channel, channel.size() - RawZipWriter.END_SIZE, RawZipWriter.END_SIZE)
+                    if (end.getInt(0).toLong() != RawZipWriter.END_SIGNATURE) {
+                        return null
+                    }
+                    val count = end.getShort(10).toInt() and 0xffff
+                    val size = end.getInt(12).toLong() and 0xffffffffL
+                    val offset = end.getInt(16).toLong() and 0xffffffffL
+                    val central = read(channel, offset, size.toInt())
+                    val entries = ArrayList<IndexEntry>(count)
+                    for (i in 0 until count) {
+                        entries.add(readEntry(central))
+                    }
+                    CachedArchive(file, entries)
+                }
+            } catch (e: Exception) {
+                null
+            }
+        }
+
+        private const val FILE_TYPE = 0x8000
+
+        private const val DIRECTORY_TYPE = 0x4000
+
+        private fun readEntry(central: ByteBuffer): IndexEntry {
+            val start = central.position()
+            if (central.getInt(start).toLong() != RawZipWriter.CENTRAL_HEADER_SIGNATURE) {
+                throw IOException("Invalid central directory")
+            }
+            val method = central.getShort(start + 10).toInt() and 0xffff
+            val dosTime = central.getInt(start + 12).toLong() and 0xffffffffL
+            val crc = central.getInt(start + 16).toLong() and 0xffffffffL
+            val compressedSize = central.getInt(start + 20).toLong() and 0xffffffffL
+            val size = central.getInt(start + 24).toLong() and 0xffffffffL
+            val nameLength = central.getShort(start + 28).toInt() and 0xffff
+            val extraLength = central.getShort(start + 30).toInt() and 0xffff
+            val commentLength = central.getShort(start + 32).toInt() and 0xffff
+            val mode = (central.getInt(start + 38).toLong() ushr 16).toInt()
+            val offset = central.getInt(start + 42).toLong() and 0xffffffffL
+            val name = ByteArray(nameLength)
+            central.position(start + 46)
+            central.get(name)
+            central.position(start + 46 + nameLength + extraLength + commentLength)
+            // Our local headers never have an extra field, so the data follows the name
+            val dataOffset = offset + RawZipWriter.LOCAL_HEADER_SIZE + nameLength
+            val entry = RawZipWriter.Entry(String(name, StandardCharsets.UTF_8), method, crc, compressedSize, size, mode,
+                    RawZipWriter.fromDosTime(dosTime))
+            return IndexEntry(entry, dataOffset)
+        }
+
+        private fun read(channel: FileChannel, position: Long, size: Int): ByteBuffer {
+            val buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN)
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw IOException("Unexpected end of archive")
+                }
+            }
+            buffer.flip()
+            return buffer
+        }
+
+        private fun transfer(channel: FileChannel, position: Long, count: Long, os: OutputStream) {
+            val target = Channels.newChannel(os)
+            var done = 0L
+            while (done < count) {
+                val n = channel.transferTo(position + done, count - done, target)
+                if (n <= 0) {
+                    throw IOException("Unexpected end of archive")
+                }
+                done += n
+            }
+        }
+    }
+}
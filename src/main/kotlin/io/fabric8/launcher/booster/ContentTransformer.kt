@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster
+
+import java.io.IOException
+import java.io.InputStream
+import java.io.InputStreamReader
+import java.io.OutputStream
+import java.io.OutputStreamWriter
+import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+/**
+ * Rewrites the contents of a file while it's being copied, so the file doesn't
+ * need to be read and written a second time afterwards. Implementations should
+ * read and write the contents as a stream, using a limited amount of memory
+ * whatever the size of the file. The streams shouldn't be closed.
+ */
+interface ContentTransformer {
+
+    @Throws(IOException::class)
+    fun transform(input: InputStream, output: OutputStream)
+}
+
+/**
+ * Ready-made [ContentTransformer]s
+ */
+object ContentTransformers {
+    private const val BUFFER_SIZE = 8 * 1024
+
+    /**
+     * Returns a transformer that replaces all occurrences of the keys of the map by
+     * their values. Where keys overlap the longest one wins.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun replacing(replacements: Map<String, String>, charset: Charset = StandardCharsets.UTF_8): ContentTransformer {
+        val keys = replacements.keys.filter { it.isNotEmpty() }.sortedByDescending { it.length }
+        val firstChars = keys.map { it[0] }.toSet()
+        val maxLength = keys.map { it.length }.max() ?: 1
+        return object : ContentTransformer {
+            override fun transform(input: InputStream, output: OutputStream) {
+                val reader = InputStreamReader(input, charset)
+                val writer = OutputStreamWriter(output, charset)
+                // Enough room to always be able to look a whole key ahead
+                val buffer = CharArray(Math.max(BUFFER_SIZE, maxLength * 2))
+                var length = 0
+                var eof = false
+                while (!eof || length > 0) {
+                    if (!eof) {
+                        val n = reader.read(buffer, length, buffer.size - length)
+                        if (n < 0) eof = true else length += n
+                    }
+                    // Matches can only start where the longest key still fits in what we've read
+                    val limit = if (eof) length else length - maxLength + 1
+                    var i = 0
+                    var plain = 0
+                    while (i < limit) {
+                        val key = if (buffer[i] in firstChars) keys.firstOrNull { matches(buffer, i, length, it) } else null
+                        if (key != null) {
+                            writer.write(buffer, plain, i - plain)
+                            writer.write(replacements.getValue(key))
+                            i += key.length
+                            plain = i
+                        } else {
+                            i++
+                        }
+                    }
+                    writer.write(buffer, plain, i - plain)
+                    System.arraycopy(buffer, i, buffer, 0, length - i)
+                    length -= i
+                }
+                writer.flush()
+            }
+        }
+    }
+
+    private fun matches(buffer: CharArray, offset: Int, length: Int, key: String): Boolean {
+        if (offset + key.length > length) {
+            return false
+        }
+        for (j in 0 until key.length) {
+            if (buffer[offset + j] != key[j]) {
+                return false
+            }
+        }
+        return true
+    }
+
+    /**
+     * Writes the transformed contents to the target, replacing it if it exists
+     * and making it executable when the mode says so
+     */
+    internal fun write(transformer: ContentTransformer, input: InputStream, target: Path, mode: Int) {
+        // The target might be a read-only link to shared content, which we must not write through
+        java.nio.file.Files.deleteIfExists(target)
+        java.nio.file.Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).use {
+            transformer.transform(input, it)
+        }
+        if (mode and 0b001_001_001 != 0) {
+            try {
+                java.nio.file.Files.setPosixFilePermissions(target, FileManifest.toPermissions(mode))
+            } catch (ex: UnsupportedOperationException) {
+                target.toFile().setExecutable(true)
+            }
+        }
+    }
+}
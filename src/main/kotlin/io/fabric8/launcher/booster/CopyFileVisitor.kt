@@ -11,19 +11,25 @@ import java.io.IOException
 import java.nio.file.FileVisitResult
 import java.nio.file.Path
 import java.nio.file.SimpleFileVisitor
-import java.nio.file.StandardCopyOption
 import java.nio.file.attribute.BasicFileAttributes
 import java.util.function.Predicate
 
 /**
  * A [SimpleFileVisitor] implementation used to copy files from a directory [Path] to another directory.
+ * How the files get copied is determined by the given [CopyStrategy].
+ * Interrupting the thread stops the copy with an [java.io.InterruptedIOException].
  *
  * @author [George Gastaldi](mailto:ggastald@redhat.com)
  */
-class CopyFileVisitor(private val targetPath: Path, private val filter: Predicate<Path>) : SimpleFileVisitor<Path>() {
+class CopyFileVisitor @JvmOverloads constructor(
+        private val targetPath: Path,
+        private val filter: Predicate<Path>,
+        private val strategy: CopyStrategy = CopyStrategy.COPY) : SimpleFileVisitor<Path>() {
 
     private var sourcePath: Path? = null
 
+    private var fileStrategy = strategy
+
     @Throws(IOException::class)
     override fun preVisitDirectory(dir: Path,
                                    attrs: BasicFileAttributes): FileVisitResult {
@@ -32,6 +38,7 @@ class CopyFileVisitor(private val targetPath: Path, private val filter: Predicat
         }
         if (sourcePath == null) {
             sourcePath = dir
+            fileStrategy = strategy.resolve(dir, targetPath)
         } else {
             val target = targetPath.resolve(sourcePath!!.relativize(dir))
             java.nio.file.Files.createDirectories(target)
@@ -42,9 +49,10 @@ class CopyFileVisitor(private val targetPath: Path, private val filter: Predicat
     @Throws(IOException::class)
     override fun visitFile(file: Path,
                            attrs: BasicFileAttributes): FileVisitResult {
+        Files.checkInterrupted()
         if (sourcePath != null && filter.test(file)) {
             val target = targetPath.resolve(sourcePath!!.relativize(file))
-            java.nio.file.Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING)
+            fileStrategy.copyFile(file, target)
         }
         return FileVisitResult.CONTINUE
     }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster
+
+import java.io.IOException
+import java.nio.channels.FileChannel
+import java.nio.file.FileStore
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.nio.file.attribute.PosixFilePermission
+import java.util.concurrent.ConcurrentHashMap
+import java.util.logging.Level
+import java.util.logging.Logger
+
+/**
+ * The way files get materialized when copying a [io.fabric8.launcher.booster.catalog.Booster]
+ * out of the shared cache into a project. Whatever the strategy, writing to a file in the
+ * project never modifies the cache.
+ */
+enum class CopyStrategy {
+    /**
+     * Copies the bytes of each file
+     */
+    COPY {
+        @Throws(IOException::class)
+        override fun copyFile(source: Path, target: Path) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING)
+            ensureWritable(target)
+        }
+    },
+
+    /**
+     * Copies each file with [FileChannel.transferTo], which lets the kernel move the data
+     * without it passing through the JVM. Whether the data blocks get shared copy-on-write
+     * depends on the filesystem and the JDK, and can't be detected from Java: on JDK 8 the
+     * transfer is done with `sendfile`, which always duplicates them.
+     */
+    CLONE {
+        @Throws(IOException::class)
+        override fun copyFile(source: Path, target: Path) {
+            // The target might be a hard link into the cache, so never write into it
+            Files.deleteIfExists(target)
+            FileChannel.open(source, StandardOpenOption.READ).use { src ->
+                FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).use { dst ->
+                    val size = src.size()
+                    var position = 0L
+                    while (position < size) {
+                        position += src.transferTo(position, size - position, dst)
+                    }
+                }
+            }
+            copyPermissions(source, target)
+        }
+    },
+
+    /**
+     * Hard links each file to the cached one. To make sure writes can't end up in the
+     * cache the linked files are made read-only, which has consequences for whoever uses
+     * the project:
+     *
+     * - files in the project are read-only and have to be replaced instead of modified
+     *   in place, files rewritten by a [ContentTransformer] during the copy are always
+     *   written as new files
+     * - the project and the cache share the files' inodes, so changing the permissions
+     *   of a project file (eg. with `chmod u+w`) changes them in the cache as well, after
+     *   which writes to it do end up in the cache
+     *
+     * That's why it's never used unless asked for. It's only safe when the filesystem
+     * enforces file permissions for the current user and the cache and project are on
+     * the same filesystem, which [resolve] checks at runtime, falling back to [COPY]
+     * when they're not. The outcome of the check is remembered per pair of filesystems.
+     */
+    HARD_LINK {
+        @Throws(IOException::class)
+        override fun copyFile(source: Path, target: Path) {
+            if (Files.isWritable(source)) {
+                source.toFile().setWritable(false, false)
+            }
+            Files.deleteIfExists(target)
+            Files.createLink(target, source)
+        }
+
+        @Throws(IOException::class)
+        override fun resolve(sourceDir: Path, targetDir: Path): CopyStrategy {
+            Files.createDirectories(targetDir)
+            val stores = Pair(Files.getFileStore(sourceDir), Files.getFileStore(targetDir))
+            return detected.computeIfAbsent(stores) { detect(it.first, it.second, targetDir) }
+        }
+    };
+
+    /**
+     * Copies a single file, replacing the target if it already exists
+     */
+    @Throws(IOException::class)
+    abstract fun copyFile(source: Path, target: Path)
+
+    /**
+     * Returns the strategy that will actually be used when copying from one directory
+     * to the other. Only differs from this strategy for [HARD_LINK]. Files
+     * should only be copied using the strategy returned by this method.
+     */
+    @Throws(IOException::class)
+    open fun resolve(sourceDir: Path, targetDir: Path): CopyStrategy = this
+
+    companion object {
+        private val logger = Logger.getLogger(CopyStrategy::class.java.name)
+
+        private val detected = ConcurrentHashMap<Pair<FileStore, FileStore>, CopyStrategy>()
+
+        private fun detect(sourceStore: FileStore, targetStore: FileStore, probeDir: Path): CopyStrategy {
+            if (sourceStore == targetStore && probe(probeDir, ::probeHardLink)) {
+                return HARD_LINK
+            }
+            logger.warning { "Hard links from '$sourceStore' to '$targetStore' wouldn't be protected against writes, copying instead" }
+            return COPY
+        }
+
+        private fun probe(dir: Path, test: (Path, Path) -> Boolean): Boolean {
+            val source = Files.createTempFile(dir, ".probe-", "")
+            val target = source.resolveSibling(source.fileName.toString() + ".copy")
+            try {
+                Files.write(source, byteArrayOf(42))
+                return test(source, target)
+            } catch (e: Exception) {
+                logger.log(Level.FINE, "Copy strategy probe failed", e)
+                return false
+            } finally {
+                Files.deleteIfExists(target)
+                Files.deleteIfExists(source)
+            }
+        }
+
+        private fun probeHardLink(source: Path, target: Path): Boolean {
+            HARD_LINK.copyFile(source, target)
+            // When writing is still possible (eg. when running as root) links could modify the cache
+            try {
+                Files.newOutputStream(target, StandardOpenOption.APPEND).close()
+                return false
+            } catch (e: IOException) {
+                return true
+            }
+        }
+
+        private fun ensureWritable(file: Path) {
+            if (!Files.isWritable(file)) {
+                file.toFile().setWritable(true)
+            }
+        }
+
+        internal fun copyPermissions(source: Path, target: Path) {
+            try {
+                Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source) + PosixFilePermission.OWNER_WRITE)
+            } catch (e: UnsupportedOperationException) {
+                if (Files.isExecutable(source)) {
+                    target.toFile().setExecutable(true)
+                }
+            }
+        }
+    }
+}
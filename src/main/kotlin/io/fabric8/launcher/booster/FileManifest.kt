@@ -0,0 +1,222 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster
+
+import io.fabric8.launcher.booster.catalog.utils.readMetadata
+import io.fabric8.launcher.booster.catalog.utils.writeJson
+import java.io.IOException
+import java.nio.file.FileVisitResult
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.SimpleFileVisitor
+import java.nio.file.attribute.BasicFileAttributes
+import java.nio.file.attribute.PosixFilePermission
+import java.security.MessageDigest
+import java.util.function.Predicate
+import java.util.zip.CRC32
+
+/**
+ * A list of all the directories and files in a tree that pass a filter, together with
+ * their sizes, modes, last-modified times and content hashes (SHA-256, and CRC-32 as used in zip archives). Directories always come before their contents.
+ * Once a manifest has been made for a tree that never changes, the tree can be copied
+ * or zipped without walking it again.
+ */
+class FileManifest(val entries: List<Entry>) {
+
+    /**
+     * A directory or file in the manifest, the path is relative to the root of the
+     * tree and always uses '/' as its separator. The last-modified time is in milliseconds
+     * since the epoch.
+     */
+    class Entry(val path: String, val isDirectory: Boolean, val size: Long, val mode: Int, val sha256: String?, val crc: Long,
+                val lastModified: Long) {
+        val isExecutable get() = mode and 0b001_001_001 != 0
+    }
+
+    val files: List<Entry> get() = entries.filter { !it.isDirectory }
+
+    val directories: List<Entry> get() = entries.filter { it.isDirectory }
+
+    /**
+     * Returns a manifest with only the directories and files that pass the filter, which
+     * gets the paths resolved against `root`. Directories that don't pass it are left out
+     * together with everything they contain.
+     */
+    fun filter(root: Path, filter: Predicate<Path>): FileManifest {
+        val filtered = ArrayList<Entry>(entries.size)
+        var skipped: String? = null
+        for (e in entries) {
+            // Entries come in depth-first order, so everything in a skipped directory follows it
+            if (skipped != null && e.path.startsWith(skipped)) {
+                continue
+            }
+            if (filter.test(root.resolve(e.path))) {
+                filtered.add(e)
+            } else if (e.isDirectory) {
+                skipped = e.path + "/"
+            }
+        }
+        return FileManifest(filtered)
+    }
+
+    /**
+     * Copies the directories and files in the manifest from `sourceDir`, which should
+     * be the tree the manifest was made for, to `targetDir`. Files that have a transformer,
+     * indexed by their path in the manifest, are rewritten while they're being copied.
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun copy(sourceDir: Path, targetDir: Path, strategy: CopyStrategy = CopyStrategy.COPY,
+             transformers: Map<String, ContentTransformer> = emptyMap()) {
+        Files.createDirectories(targetDir)
+        val fileStrategy = strategy.resolve(sourceDir, targetDir)
+        for (e in entries) {
+            io.fabric8.launcher.booster.Files.checkInterrupted()
+            val target = targetDir.resolve(e.path)
+            if (e.isDirectory) {
+                Files.createDirectories(target)
+            } else {
+                val transformer = transformers[e.path]
+                if (transformer != null) {
+                    Files.newInputStream(sourceDir.resolve(e.path)).use { ContentTransformers.write(transformer, it, target, e.mode) }
+                } else {
+                    fileStrategy.copyFile(sourceDir.resolve(e.path), target)
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the manifest as JSON to the given file
+     */
+    @Throws(IOException::class)
+    fun write(file: Path) {
+        val list = entries.map { e ->
+            if (e.isDirectory) {
+                mapOf("path" to e.path, "dir" to true, "mtime" to e.lastModified)
+            } else {
+                mapOf("path" to e.path, "size" to e.size, "mode" to e.mode, "sha256" to e.sha256, "crc" to e.crc,
+                        "mtime" to e.lastModified)
+            }
+        }
+        writeJson(file, mapOf("version" to FORMAT_VERSION, "entries" to list))
+    }
+
+    companion object {
+        private const val FORMAT_VERSION = 3
+
+        private const val DEFAULT_MODE = 420 // 0644
+
+        private const val EXECUTABLE_MODE = 493 // 0755
+
+        /**
+         * Makes a manifest of the tree at `root`. The filter works the same way as for
+         * [CopyFileVisitor]: directories that don't pass it are skipped entirely, as are
+         * files that don't pass it. Symbolic links are followed like [CopyFileVisitor] does,
+         * a link to a directory is listed as an empty directory.
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun build(root: Path, filter: Predicate<Path>): FileManifest {
+            val entries = mutableListOf<Entry>()
+            val digest = MessageDigest.getInstance("SHA-256")
+            val crc = CRC32()
+            val buffer = ByteArray(64 * 1024)
+            val posix = root.fileSystem.supportedFileAttributeViews().contains("posix")
+            Files.walkFileTree(root, object : SimpleFileVisitor<Path>() {
+                override fun preVisitDirectory(dir: Path, attrs: BasicFileAttributes): FileVisitResult {
+                    if (!filter.test(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE
+                    }
+                    if (dir != root) {
+                        entries.add(Entry(relativePath(root, dir), true, 0, EXECUTABLE_MODE, null, 0,
+                                attrs.lastModifiedTime().toMillis()))
+                    }
+                    return FileVisitResult.CONTINUE
+                }
+
+                override fun visitFile(file: Path, attrs: BasicFileAttributes): FileVisitResult {
+                    if (!filter.test(file)) {
+                        return FileVisitResult.CONTINUE
+                    }
+                    if (attrs.isSymbolicLink && Files.isDirectory(file)) {
+                        // Copying a link to a directory only ever creates an empty directory
+                        entries.add(Entry(relativePath(root, file), true, 0, EXECUTABLE_MODE, null, 0,
+                                Files.getLastModifiedTime(file).toMillis()))
+                    } else {
+                        digest.reset()
+                        crc.reset()
+                        var size = 0L
+                        Files.newInputStream(file).use { input ->
+                            while (true) {
+                                val n = input.read(buffer)
+                                if (n < 0) break
+                                digest.update(buffer, 0, n)
+                                crc.update(buffer, 0, n)
+                                size += n
+                            }
+                        }
+                        val mode = if (posix) toMode(Files.getPosixFilePermissions(file))
+                                else if (Files.isExecutable(file)) EXECUTABLE_MODE else DEFAULT_MODE
+                        entries.add(Entry(relativePath(root, file), false, size, mode, toHex(digest.digest()), crc.value,
+                                Files.getLastModifiedTime(file).toMillis()))
+                    }
+                    return FileVisitResult.CONTINUE
+                }
+            })
+            return FileManifest(entries)
+        }
+
+        /**
+         * Reads a manifest written by [write], returns `null` if the file doesn't
+         * exist or is in a format we don't understand
+         */
+        @JvmStatic
+        fun read(file: Path): FileManifest? {
+            if (!Files.isRegularFile(file)) {
+                return null
+            }
+            return try {
+                val data = readMetadata(file)
+                if ((data["version"] as? Number)?.toInt() != FORMAT_VERSION) {
+                    return null
+                }
+                val entries = (data["entries"] as List<*>).map {
+                    val e = it as Map<*, *>
+                    Entry(e["path"] as String,
+                            e["dir"] == true,
+                            (e["size"] as? Number)?.toLong() ?: 0,
+                            (e["mode"] as? Number)?.toInt() ?: EXECUTABLE_MODE,
+                            e["sha256"] as String?,
+                            (e["crc"] as? Number)?.toLong() ?: 0,
+                            (e["mtime"] as? Number)?.toLong() ?: 0)
+                }
+                FileManifest(entries)
+            } catch (e: Exception) {
+                null
+            }
+        }
+
+        private fun relativePath(root: Path, path: Path) = root.relativize(path).joinToString("/")
+
+        internal fun toMode(permissions: Set<PosixFilePermission>) =
+                permissions.fold(0) { mode, p -> mode or (1 shl (8 - p.ordinal)) }
+
+        internal fun toPermissions(mode: Int) =
+                PosixFilePermission.values().filter { mode and (1 shl (8 - it.ordinal)) != 0 }.toSet()
+
+        private fun toHex(bytes: ByteArray): String {
+            val hex = "0123456789abcdef"
+            val sb = StringBuilder(bytes.size * 2)
+            for (b in bytes) {
+                sb.append(hex[(b.toInt() shr 4) and 0xf]).append(hex[b.toInt() and 0xf])
+            }
+            return sb.toString()
+        }
+    }
+}
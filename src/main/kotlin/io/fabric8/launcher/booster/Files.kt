@@ -9,6 +9,8 @@ package io.fabric8.launcher.booster
 
 import java.io.File
 import java.io.IOException
+import java.io.InputStream
+import java.io.InterruptedIOException
 import java.io.OutputStream
 import java.nio.file.FileVisitResult
 import java.nio.file.Path
@@ -16,6 +18,7 @@ import java.nio.file.Paths
 import java.nio.file.SimpleFileVisitor
 import java.nio.file.attribute.BasicFileAttributes
 import java.util.function.Predicate
+import java.util.zip.Deflater
 import java.util.zip.ZipEntry
 import java.util.zip.ZipFile
 import java.util.zip.ZipInputStream
@@ -68,6 +71,87 @@ object Files {
         }
     }
 
+    /**
+     * File extensions of formats that are compressed already, these get stored
+     * in zip archives without compressing them again
+     */
+    val COMPRESSED_EXTENSIONS: Set<String> = setOf("jar", "war", "ear", "zip", "gz", "tgz", "bz2", "xz",
+            "png", "jpg", "jpeg", "gif", "woff", "woff2")
+
+    /**
+     * Zips the directories and files listed in the manifest, which should have been made
+     * for the given directory, and streams the archive to the provided [OutputStream].
+     * Each file is read and compressed while it's being written, so only a fixed amount
+     * of memory is used whatever the size of the files. Files in formats that are already
+     * compressed (see [COMPRESSED_EXTENSIONS]) are stored as-is.
+     * The [OutputStream] isn't closed.
+     *
+     * @param root            the root directory to be used
+     * @param directory       the directory to be zipped
+     * @param manifest        the [FileManifest] of the directory
+     * @param os              the [OutputStream] which the zip operation will be written to
+     * @param filter          only the directories and files that pass the filter get zipped
+     * @param level           the compression level to use, see [java.util.zip.Deflater]
+     * @param customizedFiles contents that replace, or are added to, the files in the
+     *                        directory, indexed by their path relative to the directory
+     * @throws IOException if any I/O error happens
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun zip(root: String, directory: Path, manifest: FileManifest, os: OutputStream,
+            filter: Predicate<Path> = Predicate { true },
+            level: Int = Deflater.DEFAULT_COMPRESSION,
+            customizedFiles: Map<String, ByteArray> = emptyMap()) {
+        zip(root, directory, manifest, os, filter, level, customizedFiles) { e ->
+            java.nio.file.Files.newInputStream(directory.resolve(e.path))
+        }
+    }
+
+    /**
+     * Like [zip] but with the contents of the files coming from the given function
+     */
+    @Throws(IOException::class)
+    internal fun zip(root: String, directory: Path, manifest: FileManifest, os: OutputStream,
+                     filter: Predicate<Path>, level: Int, customizedFiles: Map<String, ByteArray>,
+                     open: (FileManifest.Entry) -> InputStream) {
+        val writer = RawZipWriter(os)
+        val remaining = customizedFiles.toMutableMap()
+        writer.writeDirectory("$root/")
+        for (e in manifest.filter(directory, filter).entries) {
+            val name = root + "/" + e.path
+            val custom = remaining.remove(e.path)
+            when {
+                e.isDirectory -> writer.writeDirectory("$name/", RawZipWriter.DIRECTORY_MODE, e.lastModified)
+                custom != null -> writer.write(name, custom, RawZipWriter.FILE_MODE, RawZipWriter.DEFLATED, level)
+                isCompressed(e.path) -> open(e).use {
+                    writer.writeStored(name, it, e.size, e.crc, FILE_TYPE or e.mode, e.lastModified)
+                }
+                else -> open(e).use {
+                    writer.writeDeflated(name, it, FILE_TYPE or e.mode, level, e.lastModified)
+                }
+            }
+        }
+        for ((path, data) in remaining) {
+            writer.write("$root/$path", data, RawZipWriter.FILE_MODE, RawZipWriter.DEFLATED, level)
+        }
+        writer.finish()
+    }
+
+    internal const val FILE_TYPE = 0x8000
+
+    /**
+     * Throws an [InterruptedIOException] when the given thread has been interrupted,
+     * so copies can be stopped midway
+     */
+    @Throws(InterruptedIOException::class)
+    internal fun checkInterrupted(thread: Thread = Thread.currentThread()) {
+        if (thread.isInterrupted) {
+            throw InterruptedIOException("Interrupted while copying")
+        }
+    }
+
+    internal fun isCompressed(path: String) = COMPRESSED_EXTENSIONS.contains(path.substringAfterLast('.', "").toLowerCase())
+
     /**
      * Unzips a ZIP file in the target directory, preserving the directory structure
      *
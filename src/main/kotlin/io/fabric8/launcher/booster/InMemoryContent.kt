@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster
+
+import java.io.ByteArrayInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.file.NoSuchFileException
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.function.Predicate
+import java.util.zip.Deflater
+
+/**
+ * The files of a tree, as listed in its manifest, read into a single block of memory.
+ * Copying or zipping the tree from memory avoids opening and reading the files again,
+ * which for trees made up of many small files is where most of the time goes.
+ * Trees of 2GB or more can't be loaded.
+ */
+class InMemoryContent private constructor(val manifest: FileManifest, private val data: ByteArray, private val slices: Map<String, Slice>) {
+
+    private class Slice(val offset: Int, val length: Int)
+
+    /**
+     * The number of bytes used by the contents of the files
+     */
+    val size: Long get() = data.size.toLong()
+
+    /**
+     * Returns a stream with the contents of the file with the given path, relative to the
+     * root of the tree and using '/' as its separator
+     */
+    @Throws(IOException::class)
+    fun open(path: String): InputStream {
+        val slice = slices[path] ?: throw NoSuchFileException(path)
+        return ByteArrayInputStream(data, slice.offset, slice.length)
+    }
+
+    /**
+     * Writes the directories and files to `targetDir`, files that were executable
+     * are made executable again. Files that have a transformer, indexed by their path,
+     * are rewritten while they're being written.
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun copy(targetDir: Path, transformers: Map<String, ContentTransformer> = emptyMap()) {
+        java.nio.file.Files.createDirectories(targetDir)
+        for (e in manifest.entries) {
+            Files.checkInterrupted()
+            val target = targetDir.resolve(e.path)
+            if (e.isDirectory) {
+                java.nio.file.Files.createDirectories(target)
+                continue
+            }
+            val slice = slices.getValue(e.path)
+            val transformer = transformers[e.path]
+            if (transformer != null) {
+                ContentTransformers.write(transformer, ByteArrayInputStream(data, slice.offset, slice.length), target, e.mode)
+                continue
+            }
+            java.nio.file.Files.newOutputStream(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE).use {
+                it.write(data, slice.offset, slice.length)
+            }
+            if (e.isExecutable) {
+                try {
+                    java.nio.file.Files.setPosixFilePermissions(target, FileManifest.toPermissions(e.mode))
+                } catch (ex: UnsupportedOperationException) {
+                    target.toFile().setExecutable(true)
+                }
+            }
+        }
+    }
+
+    /**
+     * Zips the tree like [io.fabric8.launcher.booster.Files.zip] does, but reading the files
+     * from memory. The filter gets the paths resolved against `directory`.
+     * The [OutputStream] isn't closed.
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun zip(root: String, directory: Path, os: OutputStream,
+            filter: Predicate<Path> = Predicate { true },
+            level: Int = Deflater.DEFAULT_COMPRESSION,
+            customizedFiles: Map<String, ByteArray> = emptyMap()) {
+        Files.zip(root, directory, manifest, os, filter, level, customizedFiles) { e -> open(e.path) }
+    }
+
+    companion object {
+        /**
+         * Reads the files listed in the manifest from `sourceDir`, which should be the
+         * tree the manifest was made for
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun load(sourceDir: Path, manifest: FileManifest): InMemoryContent {
+            val total = manifest.files.fold(0L) { sum, e -> sum + e.size }
+            if (total >= Int.MAX_VALUE) {
+                throw IOException("Content of $sourceDir is too large to load into memory")
+            }
+            val data = ByteArray(total.toInt())
+            val slices = HashMap<String, Slice>()
+            var offset = 0
+            for (e in manifest.files) {
+                java.nio.file.Files.newInputStream(sourceDir.resolve(e.path)).use { input ->
+                    var read = 0
+                    while (read < e.size) {
+                        val n = input.read(data, offset + read, e.size.toInt() - read)
+                        if (n < 0) {
+                            throw IOException("File ${e.path} in $sourceDir is smaller than in its manifest")
+                        }
+                        read += n
+                    }
+                }
+                slices[e.path] = Slice(offset, e.size.toInt())
+                offset += e.size.toInt()
+            }
+            return InMemoryContent(manifest, data, slices)
+        }
+    }
+}
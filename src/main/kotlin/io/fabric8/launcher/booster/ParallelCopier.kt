@@ -0,0 +1,264 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster
+
+import io.fabric8.launcher.booster.catalog.LauncherConfiguration
+import java.io.IOException
+import java.io.UncheckedIOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.FileAlreadyExistsException
+import java.nio.file.Files
+import java.nio.file.LinkOption
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.nio.file.attribute.BasicFileAttributes
+import java.nio.file.attribute.PosixFileAttributes
+import java.nio.file.attribute.PosixFilePermission
+import java.util.EnumSet
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Predicate
+
+/**
+ * Copies a directory tree using multiple threads, each directory's subdirectories
+ * being split off into fork-join tasks. The number of threads a single copy can use
+ * is limited to `parallelism`, while all copies share a pool that is limited to
+ * [LauncherConfiguration.copyMaxThreads] threads.
+ * The filter works the same way as for [CopyFileVisitor]: directories that don't
+ * pass it are skipped entirely, as are files that don't pass it. Symbolic links are
+ * followed the same way as well: a link to a file gets the file's content copied, a link
+ * to a directory becomes an empty directory.
+ * Interrupting the thread that started the copy stops all of its tasks.
+ */
+class ParallelCopier @JvmOverloads constructor(
+        private val parallelism: Int,
+        private val strategy: CopyStrategy = CopyStrategy.COPY) {
+
+    /**
+     * Copies the contents of `sourceDir` to `targetDir`
+     */
+    @Throws(IOException::class)
+    fun copy(sourceDir: Path, targetDir: Path, filter: Predicate<Path>) {
+        if (!filter.test(sourceDir)) {
+            return
+        }
+        val posix = sourceDir.fileSystem.supportedFileAttributeViews().contains("posix")
+        val context = Context(strategy.resolve(sourceDir, targetDir), filter, posix, emptyMap())
+        try {
+            Files.createDirectories(targetDir)
+            pool.invoke(CopyTask(sourceDir, targetDir, context))
+        } catch (e: RuntimeException) {
+            throw unwrap(e)
+        }
+    }
+
+    /**
+     * Copies the directories and files in the manifest from `sourceDir`, which should
+     * be the tree the manifest was made for, to `targetDir`. No directories get walked,
+     * all the directories are created first after which the files are copied in parallel.
+     * Files that have a transformer, indexed by their path in the manifest, are rewritten
+     * while they're being copied.
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun copy(sourceDir: Path, targetDir: Path, manifest: FileManifest, transformers: Map<String, ContentTransformer> = emptyMap()) {
+        val context = Context(strategy.resolve(sourceDir, targetDir), Predicate { true }, false, transformers)
+        try {
+            Files.createDirectories(targetDir)
+            for (dir in manifest.directories) {
+                Files.createDirectories(targetDir.resolve(dir.path))
+            }
+            pool.invoke(CopyFilesTask(sourceDir, targetDir, manifest.files, context))
+        } catch (e: RuntimeException) {
+            throw unwrap(e)
+        }
+    }
+
+    private inner class Context(val fileStrategy: CopyStrategy, val filter: Predicate<Path>, val posix: Boolean,
+                                val transformers: Map<String, ContentTransformer>) {
+        // The number of tasks that have been forked and not yet joined
+        val forked = AtomicInteger()
+
+        // The thread that started the copy, the tasks stop when it gets interrupted
+        val caller: Thread = Thread.currentThread()
+
+        fun tryFork() = if (forked.incrementAndGet() < parallelism) {
+            true
+        } else {
+            forked.decrementAndGet()
+            false
+        }
+    }
+
+    private class CopyTask(private val sourceDir: Path, private val targetDir: Path, private val context: Context) : RecursiveAction() {
+        override fun compute() {
+            val forks = mutableListOf<CopyTask>()
+            try {
+                Files.newDirectoryStream(sourceDir).use { entries ->
+                    for (source in entries) {
+                        io.fabric8.launcher.booster.Files.checkInterrupted(context.caller)
+                        if (!context.filter.test(source)) {
+                            continue
+                        }
+                        val target = targetDir.resolve(source.fileName.toString())
+                        val attrs = if (context.posix) {
+                            Files.readAttributes(source, PosixFileAttributes::class.java, LinkOption.NOFOLLOW_LINKS)
+                        } else {
+                            Files.readAttributes(source, BasicFileAttributes::class.java, LinkOption.NOFOLLOW_LINKS)
+                        }
+                        if (attrs.isDirectory) {
+                            Files.createDirectories(target)
+                            val task = CopyTask(source, target, context)
+                            if (context.tryFork()) {
+                                task.fork()
+                                forks.add(task)
+                            } else {
+                                task.compute()
+                            }
+                        } else if (attrs.isSymbolicLink) {
+                            // Never walked into, but copied the same way CopyFileVisitor copies them
+                            context.fileStrategy.copyFile(source, target)
+                        } else {
+                            val permissions = (attrs as? PosixFileAttributes)?.permissions()
+                            copyFile(source, target, permissions, context.fileStrategy)
+                        }
+                    }
+                }
+            } catch (e: IOException) {
+                throw UncheckedIOException(e)
+            } finally {
+                for (task in forks) {
+                    try {
+                        task.join()
+                    } finally {
+                        context.forked.decrementAndGet()
+                    }
+                }
+            }
+        }
+    }
+
+    private class CopyFilesTask(
+            private val sourceDir: Path,
+            private val targetDir: Path,
+            private val files: List<FileManifest.Entry>,
+            private val context: Context) : RecursiveAction() {
+        override fun compute() {
+            var remaining = files
+            val forks = mutableListOf<CopyFilesTask>()
+            try {
+                // Keep splitting off half of the files for as long as we're allowed to
+                while (remaining.size > FILES_PER_TASK && context.tryFork()) {
+                    val half = remaining.size / 2
+                    val task = CopyFilesTask(sourceDir, targetDir, remaining.subList(half, remaining.size), context)
+                    task.fork()
+                    forks.add(task)
+                    remaining = remaining.subList(0, half)
+                }
+                for (e in remaining) {
+                    io.fabric8.launcher.booster.Files.checkInterrupted(context.caller)
+                    val transformer = context.transformers[e.path]
+                    if (transformer != null) {
+                        Files.newInputStream(sourceDir.resolve(e.path)).use {
+                            ContentTransformers.write(transformer, it, targetDir.resolve(e.path), e.mode)
+                        }
+                        continue
+                    }
+                    val permissions = FileManifest.toPermissions(e.mode)
+                    copyFile(sourceDir.resolve(e.path), targetDir.resolve(e.path), permissions, context.fileStrategy)
+                }
+            } catch (e: IOException) {
+                throw UncheckedIOException(e)
+            } finally {
+                for (task in forks) {
+                    try {
+                        task.join()
+                    } finally {
+                        context.forked.decrementAndGet()
+                    }
+                }
+            }
+        }
+    }
+
+    companion object {
+        private const val FILES_PER_TASK = 16
+
+        private const val BUFFER_SIZE = 64 * 1024
+
+        private val EXECUTE_PERMISSIONS = EnumSet.of(PosixFilePermission.OWNER_EXECUTE,
+                PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.OTHERS_EXECUTE)
+
+        private val pool: ForkJoinPool by lazy { ForkJoinPool(LauncherConfiguration.copyMaxThreads()) }
+
+        private val buffers = ConcurrentLinkedQueue<ByteBuffer>()
+
+        private val pooledBuffers = AtomicInteger()
+
+        private fun copyFile(source: Path, target: Path, permissions: Set<PosixFilePermission>?, strategy: CopyStrategy) {
+            if (strategy != CopyStrategy.COPY) {
+                strategy.copyFile(source, target)
+                return
+            }
+            val buffer = buffers.poll()?.also { pooledBuffers.decrementAndGet() } ?: ByteBuffer.allocateDirect(BUFFER_SIZE)
+            try {
+                FileChannel.open(source, StandardOpenOption.READ).use { src ->
+                    openTarget(target).use { dst ->
+                        while (src.read(buffer) >= 0) {
+                            buffer.flip()
+                            while (buffer.hasRemaining()) {
+                                dst.write(buffer)
+                            }
+                            buffer.clear()
+                        }
+                    }
+                }
+            } finally {
+                release(buffer)
+            }
+            // New files are already readable and writable, so only executables need their permissions set
+            if (permissions == null) {
+                CopyStrategy.copyPermissions(source, target)
+            } else if (permissions.any { it in EXECUTE_PERMISSIONS }) {
+                Files.setPosixFilePermissions(target, permissions + PosixFilePermission.OWNER_WRITE)
+            }
+        }
+
+        private fun openTarget(target: Path): FileChannel {
+            try {
+                return FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+            } catch (e: FileAlreadyExistsException) {
+                // Replace instead of overwriting, the existing file might be a hard link into the cache
+                Files.delete(target)
+                return FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+            }
+        }
+
+        // Fork-join may wrap the original exception in a copy of itself
+        private fun unwrap(e: RuntimeException): Exception {
+            var cause: Throwable? = e
+            while (cause != null && cause !is IOException) {
+                cause = cause.cause
+            }
+            return cause as? IOException ?: e
+        }
+
+        private fun release(buffer: ByteBuffer) {
+            buffer.clear()
+            // Never keep more buffers around than there can be threads using them
+            if (pooledBuffers.incrementAndGet() <= pool.parallelism) {
+                buffers.offer(buffer)
+            } else {
+                pooledBuffers.decrementAndGet()
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster
+
+import io.fabric8.launcher.booster.catalog.LauncherConfiguration
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+
+/**
+ * Extracts zip archives like [io.fabric8.launcher.booster.Files.unzip] but on multiple
+ * threads. All directories are created first, after which the files are divided over
+ * at most `threads` tasks that run on a pool shared by all extractions, limited to
+ * [LauncherConfiguration.copyMaxThreads] threads.
+ * To protect against zip bombs the number of entries is checked against the central
+ * directory before anything gets extracted, while the total uncompressed size is
+ * counted while extracting, so an archive that lies about its sizes is still stopped.
+ * Entries that would end up outside of the target directory are refused.
+ */
+class ParallelUnzipper @JvmOverloads constructor(
+        private val threads: Int,
+        private val maxEntries: Int = DEFAULT_MAX_ENTRIES,
+        private val maxTotalSize: Long = DEFAULT_MAX_TOTAL_SIZE) {
+
+    /**
+     * Unzips a ZIP file in the target directory, preserving the directory structure
+     */
+    @Throws(IOException::class)
+    fun unzip(zipFile: Path, targetDir: Path) {
+        val root = targetDir.toAbsolutePath().normalize()
+        ZipFile(zipFile.toFile()).use { zf ->
+            if (zf.size() > maxEntries) {
+                throw IOException("Zip archive has ${zf.size()} entries, more than the limit of $maxEntries")
+            }
+            val files = mutableListOf<Pair<ZipEntry, Path>>()
+            val directories = sortedSetOf<Path>()
+            for (ze in zf.entries()) {
+                val target = root.resolve(ze.name).normalize()
+                if (!target.startsWith(root)) {
+                    throw IOException("Illegal Zip entry name: ${ze.name}")
+                }
+                if (ze.isDirectory) {
+                    directories.add(target)
+                } else {
+                    files.add(Pair(ze, target))
+                    target.parent?.let { directories.add(it) }
+                }
+            }
+            for (dir in directories) {
+                Files.createDirectories(dir)
+            }
+
+            val total = AtomicLong()
+            val failed = AtomicBoolean()
+            val batches = (0 until Math.min(threads, files.size)).map { i ->
+                files.filterIndexed { index, _ -> index % threads == i }
+            }
+            val futures = batches.map { batch ->
+                pool.submit(Callable {
+                    for ((ze, target) in batch) {
+                        if (failed.get() || Thread.currentThread().isInterrupted) {
+                            break
+                        }
+                        try {
+                            extract(zf, ze, target, total)
+                        } catch (e: Exception) {
+                            failed.set(true)
+                            throw e
+                        }
+                    }
+                })
+            }
+            await(futures)
+        }
+    }
+
+    private fun extract(zf: ZipFile, ze: ZipEntry, target: Path, total: AtomicLong) {
+        val buffer = buffers.poll()?.also { pooledBuffers.decrementAndGet() } ?: ByteArray(BUFFER_SIZE)
+        try {
+            zf.getInputStream(ze).use { input ->
+                Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).use { output ->
+                    while (true) {
+                        val n = input.read(buffer)
+                        if (n < 0) break
+                        if (total.addAndGet(n.toLong()) > maxTotalSize) {
+                            throw IOException("Zip archive expands to more than the limit of $maxTotalSize bytes")
+                        }
+                        output.write(buffer, 0, n)
+                    }
+                }
+            }
+        } finally {
+            if (pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+                buffers.offer(buffer)
+            } else {
+                pooledBuffers.decrementAndGet()
+            }
+        }
+    }
+
+    private fun await(futures: List<Future<*>>) {
+        var error: Exception? = null
+        for (future in futures) {
+            try {
+                future.get()
+            } catch (e: InterruptedException) {
+                futures.forEach { it.cancel(true) }
+                Thread.currentThread().interrupt()
+                throw InterruptedIOException("Interrupted while unzipping")
+            } catch (e: ExecutionException) {
+                // Keep waiting, the archive can only be closed when all tasks are done
+                if (error == null) {
+                    error = e.cause as? IOException ?: IOException(e.cause)
+                }
+            }
+        }
+        error?.let { throw it }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_ENTRIES = 20_000
+
+        const val DEFAULT_MAX_TOTAL_SIZE = 512L * 1024 * 1024
+
+        private const val BUFFER_SIZE = 64 * 1024
+
+        private val MAX_POOLED_BUFFERS = LauncherConfiguration.copyMaxThreads()
+
+        private val buffers = ConcurrentLinkedQueue<ByteArray>()
+
+        private val pooledBuffers = AtomicInteger()
+
+        private val threadCount = AtomicInteger()
+
+        private val pool by lazy {
+            Executors.newFixedThreadPool(LauncherConfiguration.copyMaxThreads()) { r ->
+                val thread = Thread(r, "unzip-" + threadCount.incrementAndGet())
+                thread.isDaemon = true
+                thread
+            }
+        }
+    }
+}
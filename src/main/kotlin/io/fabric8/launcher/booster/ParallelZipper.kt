@@ -0,0 +1,223 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster
+
+import io.fabric8.launcher.booster.catalog.LauncherConfiguration
+import java.io.IOException
+import java.io.InputStream
+import java.io.InterruptedIOException
+import java.io.OutputStream
+import java.nio.file.Path
+import java.util.ArrayDeque
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.Predicate
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+
+/**
+ * Writes zip archives like [io.fabric8.launcher.booster.Files.zip] but compresses the
+ * entries on multiple threads. Each entry is deflated into memory or, when it's large,
+ * into a temporary spill file, after which the entries are written out in the order
+ * of the manifest, so the result is the same as when zipping on a single thread.
+ * A single archive uses at most `threads` threads at a time, while all archives share
+ * a pool that is limited to [LauncherConfiguration.copyMaxThreads] threads.
+ */
+class ParallelZipper(private val threads: Int) {
+
+    private class Task(val inline: Boolean, val run: () -> Deflated)
+
+    /**
+     * Runs a task, which can be withdrawn for as long as it hasn't started
+     */
+    private class Job(private val task: Task) : Runnable {
+        private val claimed = AtomicBoolean()
+
+        val result = CompletableFuture<Deflated>()
+
+        override fun run() {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    result.complete(task.run())
+                } catch (e: Throwable) {
+                    result.completeExceptionally(e)
+                }
+            }
+        }
+
+        /**
+         * Makes sure the task won't run, returns `false` if it has started already
+         */
+        fun withdraw() = claimed.compareAndSet(false, true)
+    }
+
+    /**
+     * The data of an entry, either in memory, in a temporary file or still to be read
+     */
+    private class Deflated(val entry: RawZipWriter.Entry, val data: ByteArray?, val spill: Path? = null, val source: (() -> InputStream)? = null) {
+        fun writeTo(os: OutputStream) {
+            if (data != null) {
+                os.write(data)
+            } else if (spill != null) {
+                java.nio.file.Files.copy(spill, os)
+            } else if (source != null) {
+                source.invoke().use { it.copyTo(os) }
+            }
+        }
+
+        fun delete() {
+            if (spill != null) {
+                java.nio.file.Files.deleteIfExists(spill)
+            }
+        }
+    }
+
+    /**
+     * Zips the directories and files listed in the manifest, see [io.fabric8.launcher.booster.Files.zip]
+     * for the meaning of the arguments. The [OutputStream] isn't closed.
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun zip(root: String, directory: Path, manifest: FileManifest, os: OutputStream,
+            filter: Predicate<Path> = Predicate { true },
+            level: Int = Deflater.DEFAULT_COMPRESSION,
+            customizedFiles: Map<String, ByteArray> = emptyMap()) {
+        zip(root, directory, manifest, os, filter, level, customizedFiles) { e ->
+            java.nio.file.Files.newInputStream(directory.resolve(e.path))
+        }
+    }
+
+    /**
+     * Like [zip] but with the contents of the files coming from the given function,
+     * which gets called from multiple threads
+     */
+    @Throws(IOException::class)
+    internal fun zip(root: String, directory: Path, manifest: FileManifest, os: OutputStream,
+                     filter: Predicate<Path>, level: Int, customizedFiles: Map<String, ByteArray>,
+                     open: (FileManifest.Entry) -> InputStream) {
+        val writer = RawZipWriter(os)
+        val remaining = customizedFiles.toMutableMap()
+        val tasks = manifest.filter(directory, filter).entries.map { e ->
+            val name = root + "/" + e.path
+            val custom = remaining.remove(e.path)
+            when {
+                e.isDirectory -> Task(true) { Deflated(RawZipWriter.Entry("$name/", RawZipWriter.STORED, 0, 0, 0, RawZipWriter.DIRECTORY_MODE, e.lastModified), null) }
+                custom != null -> Task(false) { deflate(name, custom, level) }
+                Files.isCompressed(e.path) -> Task(true) { stored(name, e) { open(e) } }
+                else -> Task(false) { deflate(name, e, level) { open(e) } }
+            }
+        } + remaining.map { (path, data) -> Task(false) { deflate("$root/$path", data, level) } }
+
+        writer.writeDirectory("$root/")
+        // At most `threads` entries are being deflated or waiting to be written at any time
+        val window = ArrayDeque<Job>()
+        try {
+            for (task in tasks) {
+                if (window.size == threads) {
+                    write(writer, window.removeFirst().result)
+                }
+                // Entries that don't need compressing are read when it's their turn
+                val job = Job(task)
+                if (task.inline) job.run() else pool.execute(job)
+                window.addLast(job)
+            }
+            while (window.isNotEmpty()) {
+                write(writer, window.removeFirst().result)
+            }
+        } finally {
+            // Entries that are being deflated are waited for, so their spill files can be deleted
+            for (job in window) {
+                if (!job.withdraw()) {
+                    try {
+                        job.result.join().delete()
+                    } catch (ignored: Exception) {
+                    }
+                }
+            }
+        }
+        writer.finish()
+    }
+
+    private fun write(writer: RawZipWriter, future: Future<Deflated>) {
+        val deflated = try {
+            future.get()
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            throw InterruptedIOException("Interrupted while zipping")
+        } catch (e: ExecutionException) {
+            throw e.cause as? IOException ?: IOException(e.cause)
+        }
+        try {
+            writer.writeRaw(deflated.entry) { deflated.writeTo(it) }
+        } finally {
+            deflated.delete()
+        }
+    }
+
+    companion object {
+        /**
+         * Files larger than this get deflated into a temporary file instead of into memory
+         */
+        private const val SPILL_THRESHOLD = 1024 * 1024
+
+        private val threadCount = AtomicInteger()
+
+        private val pool by lazy {
+            Executors.newFixedThreadPool(LauncherConfiguration.copyMaxThreads()) { r ->
+                val thread = Thread(r, "zip-" + threadCount.incrementAndGet())
+                thread.isDaemon = true
+                thread
+            }
+        }
+
+        private fun deflate(name: String, data: ByteArray, level: Int): Deflated {
+            val crc = CRC32()
+            crc.update(data)
+            val compressed = RawZipWriter.deflate(data.inputStream(), level)
+            val entry = RawZipWriter.Entry(name, RawZipWriter.DEFLATED, crc.value,
+                    compressed.size.toLong(), data.size.toLong(), RawZipWriter.FILE_MODE)
+            return Deflated(entry, compressed)
+        }
+
+        private fun deflate(name: String, e: FileManifest.Entry, level: Int, open: () -> InputStream): Deflated {
+            val mode = Files.FILE_TYPE or e.mode
+            if (e.size <= SPILL_THRESHOLD) {
+                val compressed = open().use { RawZipWriter.deflate(it, level) }
+                val entry = RawZipWriter.Entry(name, RawZipWriter.DEFLATED, e.crc, compressed.size.toLong(), e.size, mode, e.lastModified)
+                return Deflated(entry, compressed)
+            }
+            val spill = java.nio.file.Files.createTempFile("zip-spill", ".tmp")
+            try {
+                val deflater = Deflater(level, true)
+                try {
+                    DeflaterOutputStream(java.nio.file.Files.newOutputStream(spill), deflater).use { out ->
+                        open().use { it.copyTo(out) }
+                    }
+                } finally {
+                    deflater.end()
+                }
+                val entry = RawZipWriter.Entry(name, RawZipWriter.DEFLATED, e.crc, java.nio.file.Files.size(spill), e.size, mode,
+                        e.lastModified)
+                return Deflated(entry, null, spill)
+            } catch (ex: Exception) {
+                java.nio.file.Files.deleteIfExists(spill)
+                throw ex
+            }
+        }
+
+        private fun stored(name: String, e: FileManifest.Entry, open: () -> InputStream): Deflated {
+            val entry = RawZipWriter.Entry(name, RawZipWriter.STORED, e.crc, e.size, e.size, Files.FILE_TYPE or e.mode, e.lastModified)
+            return Deflated(entry, null, source = open)
+        }
+    }
+}
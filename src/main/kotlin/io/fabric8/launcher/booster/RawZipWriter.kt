@@ -0,0 +1,317 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster
+
+import java.io.ByteArrayOutputStream
+import java.io.FilterOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.charset.StandardCharsets
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneId
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.DeflaterOutputStream
+
+/**
+ * Writes a zip archive entry by entry, where unlike with [java.util.zip.ZipOutputStream]
+ * the data of an entry can be written as-is, already compressed. This makes it possible
+ * to copy entries from one archive to another without inflating and deflating them again.
+ * Entries are stamped with the last-modified time they're given, in local time as zip
+ * expects, or with the time the writer was created when they have none. ZIP64 isn't
+ * supported.
+ * The [OutputStream] isn't closed by [finish].
+ */
+class RawZipWriter(os: OutputStream) {
+
+    /**
+     * The information needed to write an entry, for a directory the name should end in '/'.
+     * The last-modified time is in milliseconds since the epoch, 0 if it isn't known.
+     */
+    class Entry @JvmOverloads constructor(val name: String, val method: Int, val crc: Long, val compressedSize: Long,
+                                          val size: Long, val mode: Int, val lastModified: Long = 0) {
+        val isDirectory get() = name.endsWith("/")
+    }
+
+    private class CountingOutputStream(os: OutputStream) : FilterOutputStream(os) {
+        var count = 0L
+
+        override fun write(b: Int) {
+            out.write(b)
+            count++
+        }
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            out.write(b, off, len)
+            count += len
+        }
+    }
+
+    private val out = CountingOutputStream(os)
+
+    private val central = ByteArrayOutputStream()
+
+    private var entryCount = 0
+
+    private val created = System.currentTimeMillis()
+
+    /**
+     * Writes an entry whose data, compressed according to the entry's method, gets
+     * written by the given function. The function must write exactly the number of
+     * bytes given by the entry's compressed size.
+     */
+    @Throws(IOException::class)
+    fun writeRaw(entry: Entry, data: (OutputStream) -> Unit) {
+        val name = entry.name.toByteArray(StandardCharsets.UTF_8)
+        checkLimits(Math.max(entry.compressedSize, entry.size))
+        val offset = out.count
+        writeInt(out, LOCAL_HEADER_SIGNATURE)
+        writeHeaderFields(out, entry, name, UTF8_FLAG)
+        out.write(name)
+        val start = out.count
+        data(out)
+        if (out.count - start != entry.compressedSize) {
+            throw IOException("Wrote ${out.count - start} bytes for entry '${entry.name}' instead of ${entry.compressedSize}")
+        }
+        writeCentralHeader(entry, name, offset, UTF8_FLAG)
+    }
+
+    /**
+     * Writes an entry whose data is read from the stream and deflated while being written,
+     * so only a fixed amount of memory is used whatever the size of the data. Because the
+     * sizes and checksum are only known afterwards they're written in a data descriptor.
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun writeDeflated(name: String, input: InputStream, mode: Int = FILE_MODE, level: Int = Deflater.DEFAULT_COMPRESSION,
+                      lastModified: Long = 0) {
+        val nameBytes = name.toByteArray(StandardCharsets.UTF_8)
+        checkLimits(0)
+        val offset = out.count
+        val flags = UTF8_FLAG or DATA_DESCRIPTOR_FLAG
+        writeInt(out, LOCAL_HEADER_SIGNATURE)
+        writeHeaderFields(out, Entry(name, DEFLATED, 0, 0, 0, mode, lastModified), nameBytes, flags)
+        out.write(nameBytes)
+        val start = out.count
+        val crc = CRC32()
+        var size = 0L
+        val deflater = Deflater(level, true)
+        try {
+            // Closing would close our output as well, so we only finish
+            val dos = DeflaterOutputStream(out, deflater, BUFFER_SIZE)
+            val buffer = ByteArray(BUFFER_SIZE)
+            while (true) {
+                val n = input.read(buffer)
+                if (n < 0) break
+                crc.update(buffer, 0, n)
+                dos.write(buffer, 0, n)
+                size += n
+            }
+            dos.finish()
+        } finally {
+            deflater.end()
+        }
+        val entry = Entry(name, DEFLATED, crc.value, out.count - start, size, mode, lastModified)
+        checkLimits(entry.size)
+        writeInt(out, DATA_DESCRIPTOR_SIGNATURE)
+        writeInt(out, entry.crc)
+        writeInt(out, entry.compressedSize)
+        writeInt(out, entry.size)
+        writeCentralHeader(entry, nameBytes, offset, flags)
+    }
+
+    /**
+     * Writes an entry without compressing it, the data is read from the stream and
+     * should have the given size and checksum
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun writeStored(name: String, input: InputStream, size: Long, crc: Long, mode: Int = FILE_MODE, lastModified: Long = 0) {
+        writeRaw(Entry(name, STORED, crc, size, size, mode, lastModified)) { out ->
+            val buffer = ByteArray(BUFFER_SIZE)
+            var remaining = size
+            while (remaining > 0) {
+                val n = input.read(buffer, 0, Math.min(buffer.size.toLong(), remaining).toInt())
+                if (n < 0) break
+                out.write(buffer, 0, n)
+                remaining -= n
+            }
+        }
+    }
+
+    private fun checkLimits(size: Long) {
+        if (entryCount == MAX_ENTRIES || out.count > MAX_SIZE || size > MAX_SIZE) {
+            throw IOException("Archive too large, ZIP64 is not supported")
+        }
+    }
+
+    private fun writeCentralHeader(entry: Entry, name: ByteArray, offset: Long, flags: Int) {
+        writeInt(central, CENTRAL_HEADER_SIGNATURE)
+        writeShort(central, VERSION_MADE_BY)
+        writeHeaderFields(central, entry, name, flags)
+        writeShort(central, 0) // comment length
+        writeShort(central, 0) // disk number
+        writeShort(central, 0) // internal attributes
+        val dosAttributes = if (entry.isDirectory) 0x10 else 0
+        writeInt(central, (entry.mode.toLong() shl 16) or dosAttributes.toLong())
+        writeInt(central, offset)
+        central.write(name)
+        entryCount++
+    }
+
+    /**
+     * Writes a directory entry, the name should end in '/'
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun writeDirectory(name: String, mode: Int = DIRECTORY_MODE, lastModified: Long = 0) {
+        writeRaw(Entry(name, STORED, 0, 0, 0, mode, lastModified)) {}
+    }
+
+    /**
+     * Writes an entry with the given, uncompressed, data. The data is compressed in
+     * memory first unless the method is [STORED].
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun write(name: String, data: ByteArray, mode: Int = FILE_MODE, method: Int = DEFLATED, level: Int = Deflater.DEFAULT_COMPRESSION,
+              lastModified: Long = 0) {
+        val crc = CRC32()
+        crc.update(data)
+        val compressed = if (method == STORED) data else deflate(data.inputStream(), level)
+        writeRaw(Entry(name, method, crc.value, compressed.size.toLong(), data.size.toLong(), mode, lastModified)) { it.write(compressed) }
+    }
+
+    /**
+     * Writes the central directory, after this no more entries can be written
+     */
+    @Throws(IOException::class)
+    fun finish() {
+        val offset = out.count
+        central.writeTo(out)
+        writeInt(out, END_SIGNATURE)
+        writeShort(out, 0) // disk number
+        writeShort(out, 0) // disk with the central directory
+        writeShort(out, entryCount)
+        writeShort(out, entryCount)
+        writeInt(out, central.size().toLong())
+        writeInt(out, offset)
+        writeShort(out, 0) // comment length
+        out.flush()
+    }
+
+    private fun writeHeaderFields(os: OutputStream, entry: Entry, name: ByteArray, flags: Int) {
+        writeShort(os, VERSION_NEEDED)
+        writeShort(os, flags)
+        writeShort(os, entry.method)
+        val dosTime = toDosTime(if (entry.lastModified > 0) entry.lastModified else created)
+        writeShort(os, (dosTime and 0xffff).toInt())
+        writeShort(os, (dosTime ushr 16).toInt())
+        writeInt(os, entry.crc)
+        writeInt(os, entry.compressedSize)
+        writeInt(os, entry.size)
+        writeShort(os, name.size)
+        writeShort(os, 0) // extra field length
+    }
+
+    companion object {
+        const val STORED = 0
+
+        const val DEFLATED = 8
+
+        const val FILE_MODE = 0x81a4 // regular file, 0644
+
+        const val DIRECTORY_MODE = 0x41ed // directory, 0755
+
+        internal const val LOCAL_HEADER_SIGNATURE = 0x04034b50L
+
+        internal const val LOCAL_HEADER_SIZE = 30
+
+        internal const val CENTRAL_HEADER_SIGNATURE = 0x02014b50L
+
+        internal const val END_SIGNATURE = 0x06054b50L
+
+        private const val DATA_DESCRIPTOR_SIGNATURE = 0x08074b50L
+
+        internal const val END_SIZE = 22
+
+        private const val VERSION_MADE_BY = (3 shl 8) or 20 // Unix, so the modes are used
+
+        private const val VERSION_NEEDED = 20
+
+        private const val UTF8_FLAG = 0x0800
+
+        private const val DATA_DESCRIPTOR_FLAG = 0x0008
+
+        private const val BUFFER_SIZE = 16 * 1024
+
+        private const val DOS_EPOCH = (1L shl 21) or (1L shl 16) // 1980-01-01 00:00:00
+
+        private const val DOS_LATEST = (127L shl 25) or (12L shl 21) or (31L shl 16) or (23L shl 11) or (59L shl 5) or 29 // 2107-12-31 23:59:58
+
+        private const val MAX_ENTRIES = 0xffff
+
+        private const val MAX_SIZE = 0xffffffffL
+
+        /**
+         * Deflates everything that can be read from the stream, without zlib header
+         * as used in zip archives
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun deflate(input: InputStream, level: Int = Deflater.DEFAULT_COMPRESSION): ByteArray {
+            val deflater = Deflater(level, true)
+            try {
+                val bytes = ByteArrayOutputStream()
+                DeflaterOutputStream(bytes, deflater).use { input.copyTo(it) }
+                return bytes.toByteArray()
+            } finally {
+                deflater.end()
+            }
+        }
+
+        /**
+         * Converts a time in milliseconds since the epoch to the local date and time, with a
+         * two second precision, that zip archives use. Times that can't be represented are
+         * clamped to the earliest or latest one that can.
+         */
+        internal fun toDosTime(millis: Long): Long {
+            val t = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault())
+            return when {
+                t.year < 1980 -> DOS_EPOCH
+                t.year > 2107 -> DOS_LATEST
+                else -> ((t.year - 1980).toLong() shl 25) or (t.monthValue.toLong() shl 21) or
+                        (t.dayOfMonth.toLong() shl 16) or (t.hour.toLong() shl 11) or
+                        (t.minute.toLong() shl 5) or (t.second.toLong() shr 1)
+            }
+        }
+
+        /**
+         * Converts the local date and time that zip archives use back to milliseconds
+         * since the epoch
+         */
+        internal fun fromDosTime(dosTime: Long): Long {
+            val t = LocalDateTime.of(((dosTime shr 25) and 0x7f).toInt() + 1980, ((dosTime shr 21) and 0x0f).toInt(),
+                    ((dosTime shr 16) and 0x1f).toInt(), ((dosTime shr 11) and 0x1f).toInt(),
+                    ((dosTime shr 5) and 0x3f).toInt(), ((dosTime shl 1) and 0x3e).toInt())
+            return t.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+        }
+
+        private fun writeShort(os: OutputStream, v: Int) {
+            os.write(v and 0xff)
+            os.write((v shr 8) and 0xff)
+        }
+
+        private fun writeInt(os: OutputStream, v: Long) {
+            writeShort(os, (v and 0xffff).toInt())
+            writeShort(os, ((v shr 16) and 0xffff).toInt())
+        }
+    }
+}
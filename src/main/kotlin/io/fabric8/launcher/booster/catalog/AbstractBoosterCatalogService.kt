@@ -8,28 +8,50 @@
 package io.fabric8.launcher.booster.catalog
 
 import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
 import java.io.UncheckedIOException
 import java.nio.file.Files
 import java.nio.file.Path
 import java.util.Arrays
 import java.util.Collections
+import java.time.Duration
 import java.util.Optional
+import java.util.concurrent.CancellationException
 import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentSkipListSet
 import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
 import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
 import java.util.function.Predicate
 import java.util.function.Supplier
 import java.util.logging.Level
 import java.util.logging.Logger
 import java.util.stream.Collectors
 import java.util.stream.Stream
+import java.util.zip.Deflater
 
+import io.fabric8.launcher.booster.CachedArchive
+import io.fabric8.launcher.booster.ContentTransformer
 import io.fabric8.launcher.booster.CopyFileVisitor
+import io.fabric8.launcher.booster.CopyStrategy
+import io.fabric8.launcher.booster.FileManifest
+import io.fabric8.launcher.booster.InMemoryContent
+import io.fabric8.launcher.booster.ParallelCopier
+import io.fabric8.launcher.booster.ParallelZipper
 import io.fabric8.launcher.booster.catalog.spi.BoosterCatalogProvider
 import io.fabric8.launcher.booster.catalog.spi.BoosterCatalogSourceProvider
 import io.fabric8.launcher.booster.catalog.spi.NativeGitCatalogProvider
+import io.fabric8.launcher.booster.catalog.spi.NativeGitCatalogSourceProvider
+import io.fabric8.launcher.booster.catalog.utils.supplyInterruptibly
 
 /**
  * This service reads from the Booster catalog Github repository in https://github.com/openshiftio/booster-catalog and
@@ -38,11 +60,31 @@ import io.fabric8.launcher.booster.catalog.spi.NativeGitCatalogProvider
  * @author [George Gastaldi](mailto:ggastald@redhat.com)
  * @author [Tako Schotanus](mailto:tschotan@redhat.com)
  */
-abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constructor(config: AbstractBuilder<BOOSTER, out AbstractBoosterCatalogService<BOOSTER>>) : BoosterCatalog<BOOSTER>, BoosterFetcher {
+abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constructor(config: AbstractBuilder<BOOSTER, out AbstractBoosterCatalogService<BOOSTER>>) : BoosterCatalog<BOOSTER>, BoosterFetcher, ContentAccessListener {
 
     @Volatile
     private var boosters = emptySet<BOOSTER>()
 
+    /**
+     * The boosters as they were at the end of the last indexing run, `null` until
+     * the first indexing run has finished
+     */
+    @Volatile
+    var snapshot: CatalogSnapshot<BOOSTER>? = null
+        private set
+
+    private val snapshotVersion = AtomicLong()
+
+    // The most recent snapshots, including the current one, without the data derived from them
+    private val history = java.util.ArrayDeque<CatalogSnapshot<BOOSTER>>()
+
+    private val historySize: Int
+
+    private val queryExecutor: QueryExecutor
+
+    // Keeps the ETags of this instance apart from those of earlier runs, which used the same versions
+    private val exportTagPrefix = java.lang.Long.toString(System.currentTimeMillis(), 36)
+
     private val catalogProvider: BoosterCatalogProvider
 
     private val sourceProvider: BoosterCatalogSourceProvider
@@ -55,6 +97,55 @@ abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constr
 
     private val executor: ExecutorService
 
+    private val retryPolicy: FetchRetryPolicy
+
+    private val circuitBreaker: FetchCircuitBreaker
+
+    private val maxStaleness: Duration?
+
+    private val popularity: BoosterPopularity
+
+    private val prefetchLimit: Int
+
+    private val speculativeFetcher: SpeculativeFetcher?
+
+    // Runs the fetches, speculative ones on the speculative fetcher's thread
+    private val fetchExecutor: Executor
+
+    private val copyStrategy: CopyStrategy
+
+    private val copier: ParallelCopier?
+
+    private val zipCompressionLevel: Int
+
+    private val zipper: ParallelZipper?
+
+    private val deduplicateContent: Boolean
+
+    private val memoryTier: MemoryTier?
+
+    private val janitor: ContentJanitor?
+
+    // The folder with the cloned boosters, known once cached content was fetched unless we know the root directory
+    @Volatile
+    private var boostersDir: Path? = null
+
+    // The number of copies and zips in progress, per content path
+    private val pins = ConcurrentHashMap<Path, Int>()
+
+    // Content released by the blob store while it was pinned, deleted once it's unpinned
+    private val releasedContent = ConcurrentHashMap.newKeySet<Path>()
+
+    // Created when the first cached content is fetched, unless we know the root directory
+    @Volatile
+    private var blobStore: BlobStore? = null
+
+    // The last successfully fetched content, per booster id
+    private val contentRecords = ConcurrentHashMap<String, ContentRecord>()
+
+    // The moment we started serving stale content, per booster id
+    private val revalidations = ConcurrentHashMap<String, Long>()
+
     @Volatile
     private var indexResult: CompletableFuture<Set<BOOSTER>>? = null
 
@@ -66,6 +157,23 @@ abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constr
     protected val prefilteredBoosters: Stream<BOOSTER>
         get() = boosters.stream().filter(indexFilter).filter(ignored(false))
 
+    /**
+     * Returns the prefiltered boosters that pass the filter. Once indexing has finished
+     * they're filtered in parallel when that's expected to take longer than the
+     * threshold set with [AbstractBuilder.parallelQueryThreshold].
+     */
+    protected fun prefilteredBoosters(filter: Predicate<in BOOSTER>): Stream<BOOSTER> {
+        val s = snapshot ?: return prefilteredBoosters.filter(filter)
+        return filterBoosters(s.boosters, filter)
+    }
+
+    /**
+     * Returns the boosters from the list that pass the filter, in parallel when that's
+     * expected to pay off, see [prefilteredBoosters]
+     */
+    protected fun filterBoosters(boosters: List<BOOSTER>, filter: Predicate<in BOOSTER>): Stream<BOOSTER> =
+            queryExecutor.filter(boosters, filter)
+
     init {
         this.catalogProvider = config.catalogProvider ?: config.discoverCatalogProvider()
         this.sourceProvider = config.sourceProvider ?: config.discoverCatalogSourceProvider()
@@ -73,6 +181,26 @@ abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constr
         this.listener = config.listener
         this.transformer = config.transformer
         this.executor = config.executor ?: ForkJoinPool.commonPool()
+        this.retryPolicy = config.fetchRetryPolicy
+        this.circuitBreaker = FetchCircuitBreaker(retryPolicy)
+        this.maxStaleness = config.maxStaleness
+        this.popularity = BoosterPopularity(config.rootDir?.resolve(BoosterPopularity.POPULARITY_FILE))
+        this.prefetchLimit = config.prefetchLimit
+        this.speculativeFetcher = config.speculativeFetchDeadline?.let { SpeculativeFetcher(it, config.speculativeFetchCandidates) }
+        this.fetchExecutor = speculativeFetcher?.executor(executor) ?: executor
+        this.copyStrategy = config.copyStrategy
+        this.zipCompressionLevel = config.zipCompressionLevel
+        this.zipper = if (config.zipParallelism > 1) ParallelZipper(config.zipParallelism) else null
+        this.copier = if (config.copyParallelism > 1) ParallelCopier(config.copyParallelism, config.copyStrategy) else null
+        this.memoryTier = if (config.memoryBudget > 0) MemoryTier(config.memoryBudget) else null
+        this.historySize = config.snapshotHistory
+        this.queryExecutor = QueryExecutor(config.parallelQueryThreshold.toNanos())
+        this.janitor = if (config.janitorThreads > 0) ContentJanitor(config.janitorThreads, config.janitorDeletionsPerSecond) else null
+        this.boostersDir = config.rootDir?.resolve(NativeGitCatalogSourceProvider.CLONED_BOOSTERS_DIR)
+        this.deduplicateContent = config.deduplicateContent
+        if (deduplicateContent) {
+            this.blobStore = config.rootDir?.let { BlobStore(it.resolve(BlobStore.BLOBS_DIR)) }
+        }
         logger.info("Using " + sourceProvider.javaClass.name)
     }
 
@@ -106,17 +234,38 @@ abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constr
                         boosters = bs
                     }
                     doIndex(bs)
+                    val prefiltered = bs.stream().filter(indexFilter).filter(ignored(false)).collect(Collectors.toList())
+                    val s = CatalogSnapshot(snapshotVersion.incrementAndGet(), prefiltered)
+                    prepareSnapshot(s)
+                    synchronized(history) {
+                        history.addLast(CatalogSnapshot(s.version, s.boosters))
+                        while (history.size > Math.max(historySize, 1)) {
+                            history.removeFirst()
+                        }
+                    }
+                    snapshot = s
                     if (reindex) {
                         // For re-indexing we set the global list of boosters at the end of the
                         // indexing process. This way users keep seeing the full existing list
                         // until re-indexing has terminated.
                         boosters = bs
                     }
+                    releaseContent(bs)
+                    if (janitor != null) {
+                        collectStaleContent()
+                    }
+                    popularity.save()
                     bs
                 } catch (ex: IOException) {
                     throw UncheckedIOException(ex)
                 }
             }, executor)
+            ir.thenRun {
+                // The boosters are all new so if we were pre-fetching before we do it again
+                if (prefetchResult != null) {
+                    prefetchBoosters()
+                }
+            }
             indexResult = ir
         }
         return ir!!
@@ -126,17 +275,23 @@ abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constr
      * Pre-fetches the code for [Booster]s that were found when running [.index].
      * It's not necessary to run this because [Booster] code will be downloaded on
      * demand, but if you want to avoid any delays for the user you can run this method.
+     * The most popular boosters are fetched first and if a limit was set (see
+     * [AbstractBuilder.prefetchLimit]) only that number of boosters will be fetched,
+     * the rest will be fetched on demand.
+     * Once pre-fetching has been requested it will be done again after each re-index.
      */
     @Synchronized
     fun prefetchBoosters(): CompletableFuture<Set<BOOSTER>> {
         assert(indexResult != null)
         var pr = prefetchResult
-        if (pr == null) {
+        if (pr == null || pr.isDone) {
             pr = CompletableFuture.supplyAsync(Supplier<Set<BOOSTER>> {
                 logger.info { "Pre-fetching boosters..." }
-                for (b in boosters) {
+                val bs = boosters
+                for (b in popularity.sort(bs).take(prefetchLimit)) {
                     try {
-                        b.content().get()
+                        // We don't want pre-fetching to count as an access
+                        b.fetchContent().get()
                     } catch (e: InterruptedException) {
                         break
                     } catch (e: Exception) {
@@ -146,50 +301,596 @@ abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constr
 
                 }
                 logger.info { "Finished prefetching boosters" }
-                boosters
+                bs
             }, executor)
             prefetchResult = pr
         }
         return pr!!
     }
 
+    override fun contentAccessed(booster: Booster) {
+        if (popularity.record(booster)) {
+            executor.execute { popularity.save() }
+        }
+    }
+
     /**
-     * Clones a Booster repo and provides the path where to find it as a result
+     * Returns the number of times the content of the given [Booster] was accessed
+     */
+    fun getPopularity(booster: BOOSTER): Long = popularity.count(booster)
+
+    /**
+     * Clones a Booster repo and provides the path where to find it as a result.
+     * Cancelling the result will abort the clone.
+     * Fetches fail fast while the circuit for the booster's repository host is open,
+     * see [FetchRetryPolicy] for the details.
+     * When stale-while-revalidate is enabled (see [AbstractBuilder.staleWhileRevalidate])
+     * and a different version of the booster was fetched before, that version is returned
+     * immediately while the new one is fetched in the background.
      */
     override fun fetchBoosterContent(booster: Booster): CompletableFuture<Path> {
         synchronized(booster) {
-            val contentResult = CompletableFuture.supplyAsync(Supplier<Path> {
-                sourceProvider(booster)
-            }, executor)
+            val record = contentRecords[booster.id]
+            if (maxStaleness == null || record == null || !Files.isDirectory(record.path)) {
+                return fetch(booster)
+            }
+            if (record.isVersionOf(booster)) {
+                // Nothing changed, no need to fetch anything
+                return CompletableFuture.completedFuture(record.path)
+            }
+            val staleSince = revalidations.computeIfAbsent(booster.id) { System.nanoTime() }
+            val validFor = maxStaleness.minusNanos(System.nanoTime() - staleSince)
+            val fresh = fetch(booster)
+            if (validFor.isNegative || validFor.isZero) {
+                // The old version has been around for too long, we'll wait for the new one
+                return fresh
+            }
+            logger.info { "Serving stale content for booster '${booster.id}' while fetching ref '${booster.gitRef}'" }
+            val result = ContentResult()
+            result.completeWithFallback(record.path, validFor, fresh)
+            return result
+        }
+    }
+
+    private fun fetch(booster: Booster): CompletableFuture<Path> {
+        val host = FetchCircuitBreaker.repositoryHost(booster.gitRepo)
+        if (!circuitBreaker.tryAcquire(host)) {
+            val retryIn = circuitBreaker.retryIn(host)
+            val error = IOException("Fetching from '$host' is suspended for ${retryIn.seconds}s after repeated failures")
+            val result = ContentResult()
+            if (!completeWithLastGoodContent(result, booster, retryIn)) {
+                result.completeExceptionally(error)
+            }
+            return result
+        }
+        // The bookkeeping is done before the result completes so anyone
+        // waiting for the result will see its effects
+        val contentResult = supplyInterruptibly(fetchExecutor) {
+            try {
+                val path = sourceProvider(booster)
+                circuitBreaker.success(host)
+                val manifest = loadManifest(booster, path)
+                if (isCached(path)) {
+                    boostersDir = path.parent.parent
+                    if (manifest != null) {
+                        getBlobStore(path)?.add(blobKey(booster.id, booster.gitRepo, booster.gitRef), path, manifest)
+                    }
+                }
+                contentRecords[booster.id] = ContentRecord(path, booster.gitRepo, booster.gitRef, manifest)
+                revalidations.remove(booster.id)
+                path
+            } catch (ex: Exception) {
+                if (Thread.currentThread().isInterrupted) {
+                    circuitBreaker.abandon(host)
+                } else {
+                    circuitBreaker.failure(host, ex)
+                    logger.log(Level.WARNING, "Error while fetching booster '${booster.id}' from '$host'", ex)
+                }
+                throw ex
+            }
+        }
+        contentResult.whenComplete { _, ex ->
+            if (ex is CancellationException) {
+                circuitBreaker.abandon(host)
+            }
+        }
+        if (!retryPolicy.serveLastGoodContent) {
             return contentResult
         }
+        val result = ContentResult()
+        contentResult.whenComplete { path, ex ->
+            if (ex == null) {
+                result.complete(path)
+            } else if (ex is CancellationException || !completeWithLastGoodContent(result, booster, circuitBreaker.retryIn(host))) {
+                result.completeExceptionally(ex)
+            }
+        }
+        result.whenComplete { _, ex ->
+            if (ex is CancellationException) {
+                contentResult.cancel(true)
+            }
+        }
+        return result
+    }
+
+    private fun completeWithLastGoodContent(result: ContentResult, booster: Booster, validFor: Duration): Boolean {
+        val path = contentRecords[booster.id]?.path
+        if (!retryPolicy.serveLastGoodContent || path == null || !Files.isDirectory(path)) {
+            return false
+        }
+        logger.warning { "Serving previously fetched content for booster '${booster.id}'" }
+        return result.completeWithFallback(path, validFor)
+    }
+
+    /**
+     * Returns the manifest of the content at the given path, reading it from next to the
+     * content when it was stored there before and otherwise building it. Manifests are only
+     * stored for content in the cache.
+     */
+    private fun loadManifest(booster: Booster, path: Path): FileManifest? {
+        try {
+            val cached = isCached(path)
+            val manifestFile = path.resolveSibling(path.fileName.toString() + MANIFEST_SUFFIX)
+            if (cached) {
+                FileManifest.read(manifestFile)?.let { return it }
+            }
+            val manifest = FileManifest.build(path, EXCLUDED_PROJECT_FILTER)
+            if (cached) {
+                manifest.write(manifestFile)
+                // An archive left next to it was built from an older manifest
+                Files.deleteIfExists(path.resolveSibling(path.fileName.toString() + ARCHIVE_SUFFIX))
+            }
+            return manifest
+        } catch (e: Exception) {
+            logger.log(Level.WARNING, "Couldn't build the file manifest for booster '${booster.id}'", e)
+            return null
+        }
+    }
+
+    private fun getBlobStore(path: Path): BlobStore? {
+        if (!deduplicateContent) {
+            return null
+        }
+        return blobStore ?: synchronized(contentRecords) {
+            blobStore ?: BlobStore(path.parent.parent.resolveSibling(BlobStore.BLOBS_DIR)).also { blobStore = it }
+        }
+    }
+
+    /**
+     * Removes the cached content of booster versions that are no longer in the catalog
+     * from the blob store and deletes it, unless it's the last good content of a booster.
+     * Content that's being copied or zipped is only deleted once that's done.
+     */
+    private fun releaseContent(boosters: Set<BOOSTER>) {
+        val store = blobStore ?: return
+        val keys = boosters.mapTo(HashSet()) { blobKey(it.id, it.gitRepo, it.gitRef) }
+        contentRecords.forEach { (id, r) -> keys.add(blobKey(id, r.gitRepo, r.gitRef)) }
+        for (path in store.retain(keys)) {
+            releasedContent.add(path)
+            if (pins.containsKey(path)) {
+                logger.info { "Keeping released content '$path' until it's no longer in use" }
+            } else {
+                deleteReleased(path)
+            }
+        }
+    }
+
+    private fun deleteReleased(path: Path) {
+        if (!releasedContent.remove(path)) {
+            return
+        }
+        try {
+            memoryTier?.evict(path)
+            io.fabric8.launcher.booster.Files.deleteRecursively(path)
+            Files.deleteIfExists(path.resolveSibling(path.fileName.toString() + MANIFEST_SUFFIX))
+            Files.deleteIfExists(path.resolveSibling(path.fileName.toString() + ARCHIVE_SUFFIX))
+        } catch (e: IOException) {
+            logger.log(Level.WARNING, "Couldn't delete released content '$path'", e)
+        }
+    }
+
+    /**
+     * Deletes, in the background, the cached content of booster versions that are no longer
+     * in the catalog, unless it's the last good content of a booster or it's being copied or
+     * zipped. This is done after every (re-)index when the janitor is enabled, see
+     * [AbstractBuilder.contentJanitor], but can also be started by hand.
+     */
+    fun collectStaleContent(): CompletableFuture<JanitorReport> {
+        val dir = boostersDir
+        if (janitor == null || dir == null) {
+            return CompletableFuture.completedFuture(JanitorReport.EMPTY)
+        }
+        val referenced = boosters.mapTo(HashSet()) {
+            dir.resolve(it.id).resolve(NativeGitCatalogSourceProvider.versionDirName(it.gitRepo, it.gitRef))
+        }
+        val result = janitor.collect(dir) { path ->
+            path in referenced || pins.containsKey(path) || contentRecords.values.any { it.path == path }
+        }
+        return result.whenComplete { report, _ ->
+            report?.deleted?.forEach { memoryTier?.evict(it) }
+        }
+    }
+
+    private inline fun <T> pinned(path: Path, block: () -> T): T {
+        pins.merge(path, 1, Integer::sum)
+        try {
+            return block()
+        } finally {
+            if (pins.computeIfPresent(path) { _, n -> if (n > 1) n - 1 else null } == null && path in releasedContent) {
+                deleteReleased(path)
+            }
+        }
+    }
+
+    /**
+     * Returns the content at the given path from memory when the memory tier is enabled,
+     * only content in the cache is kept in memory because it never changes
+     */
+    private fun inMemory(path: Path, manifest: FileManifest): InMemoryContent? =
+            if (memoryTier != null && isCached(path)) memoryTier.get(path, manifest) else null
+
+    /**
+     * Returns the manifest of the given [Booster]'s content, if it's available
+     * for the content at the given path
+     */
+    protected fun getManifest(booster: Booster, path: Path): FileManifest? =
+            contentRecords[booster.id]?.takeIf { it.path == path }?.manifest
+
+    /**
+     * Streams a zip archive of the [Booster] contents straight from the cached content to
+     * the given stream, with all files placed in a directory with the given name. Only the
+     * files and directories that pass the filter are included. Files are compressed while
+     * being written, using the level set with [AbstractBuilder.zipCompressionLevel], except
+     * for files that are compressed already. When [AbstractBuilder.zipParallelism] is set
+     * files are compressed on multiple threads. When the memory tier is enabled (see
+     * [AbstractBuilder.memoryTier]) the files are read from memory. The [OutputStream] isn't closed.
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun zip(booster: BOOSTER, rootName: String, os: OutputStream, filter: Predicate<Path> = Predicate { true }) {
+        try {
+            val modulePath = booster.content().get()
+            pinned(modulePath) {
+                val manifest = getManifest(booster, modulePath) ?: FileManifest.build(modulePath, EXCLUDED_PROJECT_FILTER)
+                val memory = inMemory(modulePath, manifest)
+                val open: (FileManifest.Entry) -> InputStream = if (memory != null) {
+                    { e -> memory.open(e.path) }
+                } else {
+                    { e -> Files.newInputStream(modulePath.resolve(e.path)) }
+                }
+                if (zipper != null) {
+                    zipper.zip(rootName, modulePath, manifest, os, filter, zipCompressionLevel, emptyMap(), open)
+                } else {
+                    io.fabric8.launcher.booster.Files.zip(rootName, modulePath, manifest, os, filter, zipCompressionLevel, emptyMap(), open)
+                }
+            }
+        } catch (ex: InterruptedException) {
+            throw IOException("Unable to zip Booster", ex)
+        } catch (ex: ExecutionException) {
+            throw IOException("Unable to zip Booster", ex)
+        }
     }
 
     /**
-     * Copies the [Booster] contents to the specified [Path]
+     * Writes a zip archive of the [Booster] contents to the stream, with all files placed
+     * in a directory with the given name. The customized files, indexed by their path relative
+     * to that directory, replace or are added to the booster's files.
+     * For content in the cache an archive with all files already compressed is built once
+     * for every version of a booster, so only the customized files need to be compressed.
+     * The [OutputStream] isn't closed.
      */
     @Throws(IOException::class)
-    override fun copy(booster: BOOSTER, projectRoot: Path): Path {
+    @JvmOverloads
+    fun writeArchive(booster: BOOSTER, rootName: String, os: OutputStream, customizedFiles: Map<String, ByteArray> = emptyMap()) {
         try {
             val modulePath = booster.content().get()
-            return Files.walkFileTree(modulePath,
-                    CopyFileVisitor(projectRoot, Predicate { p -> !EXCLUDED_PROJECT_FILES.contains(p.toFile().name.toLowerCase()) }))
+            pinned(modulePath) {
+                val record = contentRecords[booster.id]?.takeIf { it.path == modulePath }
+                val manifest = record?.manifest ?: FileManifest.build(modulePath, EXCLUDED_PROJECT_FILTER)
+                val archive = if (record?.manifest != null && record.isCached) getArchive(booster, record, record.manifest) else null
+                if (archive != null) {
+                    archive.writeTo(os, rootName, customizedFiles)
+                } else {
+                    io.fabric8.launcher.booster.Files.zip(rootName, modulePath, manifest, os,
+                            Predicate { true }, zipCompressionLevel, customizedFiles)
+                }
+            }
+        } catch (ex: InterruptedException) {
+            throw IOException("Unable to archive Booster", ex)
+        } catch (ex: ExecutionException) {
+            throw IOException("Unable to archive Booster", ex)
+        }
+    }
+
+    private fun getArchive(booster: Booster, record: ContentRecord, manifest: FileManifest): CachedArchive? {
+        record.archive?.let { return it }
+        synchronized(record) {
+            if (record.archive == null) {
+                val file = record.path.resolveSibling(record.path.fileName.toString() + ARCHIVE_SUFFIX)
+                try {
+                    record.archive = CachedArchive.open(file) ?: CachedArchive.build(file, record.path, manifest)
+                } catch (e: IOException) {
+                    logger.log(Level.WARNING, "Couldn't build the archive for booster '${booster.id}'", e)
+                }
+            }
+            return record.archive
+        }
+    }
+
+    /**
+     * Returns the state of the circuit breakers for all repository hosts that content
+     * has been fetched from, indexed by host name
+     */
+    fun getHostStatus(): Map<String, FetchCircuitBreaker.HostStatus> = circuitBreaker.status()
+
+    /**
+     * Copies the [Booster] contents to the specified [Path], from memory when the
+     * memory tier is enabled (see [AbstractBuilder.memoryTier])
+     */
+    @Throws(IOException::class)
+    override fun copy(booster: BOOSTER, projectRoot: Path): Path = copy(booster, projectRoot, emptyMap())
+
+    /**
+     * Copies the [Booster] contents to the specified [Path], rewriting the files that have
+     * a transformer while they're being copied. The transformers are indexed by the path of
+     * the file relative to the booster root, using '/' as the separator. All other files
+     * are copied as usual.
+     */
+    @Throws(IOException::class)
+    fun copy(booster: BOOSTER, projectRoot: Path, transformers: Map<String, ContentTransformer>): Path {
+        try {
+            return copyContent(booster, booster.content().get(), projectRoot, transformers)
         } catch (ex: InterruptedException) {
             throw IOException("Unable to copy Booster", ex)
         } catch (ex: ExecutionException) {
             throw IOException("Unable to copy Booster", ex)
         }
+    }
+
+    /**
+     * Fetches the [Booster] contents and copies them to the specified [Path] without
+     * blocking the caller, both are done using the executor. Cancelling the result stops
+     * the copy midway and deletes whatever was copied so far, the same happens when
+     * the copy fails. The fetch itself isn't cancelled because it might be shared.
+     * A failed fetch or copy fails the result with the original exception.
+     */
+    fun copyAsync(booster: BOOSTER, projectRoot: Path): CompletableFuture<Path> {
+        val result = CompletableFuture<Path>()
+        val copy = AtomicReference<CompletableFuture<Path>>()
+        booster.content().whenComplete { modulePath, ex ->
+            if (ex != null) {
+                result.completeExceptionally(unwrap(ex))
+            } else if (!result.isDone) {
+                val c = supplyInterruptibly(executor) {
+                    val created = createdPaths(getManifest(booster, modulePath), modulePath, projectRoot)
+                    try {
+                        copyContent(booster, modulePath, projectRoot, emptyMap())
+                    } catch (e: Exception) {
+                        // Clean up even when interrupted, so don't let the interrupt get in the way
+                        val interrupted = Thread.interrupted()
+                        created.forEach { io.fabric8.launcher.booster.Files.deleteRecursively(it) }
+                        if (interrupted) {
+                            Thread.currentThread().interrupt()
+                        }
+                        throw e
+                    }
+                }
+                copy.set(c)
+                c.whenComplete { path, e ->
+                    if (e == null) result.complete(path) else result.completeExceptionally(unwrap(e))
+                }
+                if (result.isCancelled) {
+                    c.cancel(true)
+                }
+            }
+        }
+        result.whenComplete { _, ex ->
+            if (ex is CancellationException) {
+                copy.get()?.cancel(true)
+            }
+        }
+        return result
+    }
+
+    private fun unwrap(ex: Throwable): Throwable = if (ex is CompletionException) ex.cause ?: ex else ex
+
+    /**
+     * Copies boosters to many targets at once, the map contains the booster to copy for
+     * each target. The content of each booster is fetched and listed only once, after which
+     * all the copies are done in parallel on a pool shared by all batches, limited to
+     * [LauncherConfiguration.copyMaxThreads] threads. A failed copy doesn't stop the others
+     * and is cleaned up like with [copyAsync].
+     */
+    fun copyAll(targets: Map<Path, BOOSTER>): BatchCopyReport {
+        val start = System.nanoTime()
+        val copied = ConcurrentHashMap<Path, Path>()
+        val failures = ConcurrentHashMap<Path, Exception>()
+        val files = AtomicLong()
+        val bytes = AtomicLong()
+        // Start all the fetches first, so they can run at the same time
+        val groups = targets.entries.groupBy { it.value.id }.values.map { group ->
+            val booster = group[0].value
+            Triple(booster, booster.content(), group.map { it.key })
+        }
+        val futures = ArrayList<Future<*>>()
+        for ((booster, content, group) in groups) {
+            val modulePath: Path
+            val manifest: FileManifest
+            try {
+                modulePath = content.get()
+                manifest = getManifest(booster, modulePath) ?: FileManifest.build(modulePath, EXCLUDED_PROJECT_FILTER)
+            } catch (ex: InterruptedException) {
+                Thread.currentThread().interrupt()
+                group.forEach { failures[it] = IOException("Unable to copy Booster", ex) }
+                continue
+            } catch (ex: Exception) {
+                val error = if (ex is IOException) ex else IOException("Unable to copy Booster", ex)
+                group.forEach { failures[it] = error }
+                continue
+            }
+            val memory = inMemory(modulePath, manifest)
+            val size = manifest.files.fold(0L) { sum, e -> sum + e.size }
+            for (target in group) {
+                futures.add(batchCopyPool.submit {
+                    pinned(modulePath) {
+                        val created = createdPaths(manifest, modulePath, target)
+                        try {
+                            if (memory != null) {
+                                memory.copy(target)
+                            } else {
+                                manifest.copy(modulePath, target, copyStrategy)
+                            }
+                            copied[target] = modulePath
+                            files.addAndGet(manifest.files.size.toLong())
+                            bytes.addAndGet(size)
+                        } catch (ex: Exception) {
+                            created.forEach { io.fabric8.launcher.booster.Files.deleteRecursively(it) }
+                            failures[target] = ex
+                        }
+                    }
+                })
+            }
+        }
+        for (future in futures) {
+            try {
+                future.get()
+            } catch (ex: InterruptedException) {
+                futures.forEach { it.cancel(true) }
+                Thread.currentThread().interrupt()
+                break
+            }
+        }
+        val report = BatchCopyReport(copied, failures, files.get(), bytes.get(), Duration.ofNanos(System.nanoTime() - start))
+        logger.info { report.toString() }
+        return report
+    }
+
+    private fun copyContent(booster: BOOSTER, modulePath: Path, projectRoot: Path, transformers: Map<String, ContentTransformer>): Path {
+        return pinned(modulePath) {
+            // Transforming needs the paths of the files relative to the root, which the manifest has
+            val manifest = getManifest(booster, modulePath)
+                    ?: if (transformers.isNotEmpty()) FileManifest.build(modulePath, EXCLUDED_PROJECT_FILTER) else null
+            if (manifest != null) {
+                val memory = inMemory(modulePath, manifest)
+                if (memory != null) {
+                    memory.copy(projectRoot, transformers)
+                } else if (copier != null) {
+                    copier.copy(modulePath, projectRoot, manifest, transformers)
+                } else {
+                    manifest.copy(modulePath, projectRoot, copyStrategy, transformers)
+                }
+                return modulePath
+            }
+            if (copier != null) {
+                copier.copy(modulePath, projectRoot, EXCLUDED_PROJECT_FILTER)
+                return modulePath
+            }
+            Files.walkFileTree(modulePath, CopyFileVisitor(projectRoot, EXCLUDED_PROJECT_FILTER, copyStrategy))
+        }
+    }
 
+    /**
+     * Returns the paths a copy to the project root would create, the project root itself
+     * if it doesn't exist yet or otherwise the top-level files and directories that don't
+     * exist yet. Only these get deleted when a copy fails, so nothing that was there
+     * before is lost.
+     */
+    private fun createdPaths(manifest: FileManifest?, modulePath: Path, projectRoot: Path): List<Path> {
+        if (!Files.exists(projectRoot)) {
+            return listOf(projectRoot)
+        }
+        val names = manifest?.entries?.map { it.path.substringBefore('/') }?.distinct()
+                ?: Files.list(modulePath).use { s -> s.filter(EXCLUDED_PROJECT_FILTER).map { it.fileName.toString() }.collect(Collectors.toList()) }
+        return names.map { projectRoot.resolve(it) }.filter { !Files.exists(it) }
     }
 
-    override fun getBooster(filter: Predicate<BOOSTER>): Optional<BOOSTER> =
-            prefilteredBoosters
+    override fun getBooster(filter: Predicate<BOOSTER>): Optional<BOOSTER> {
+        val booster = prefilteredBoosters
                 .filter(filter)
                 .findAny()
+        booster.ifPresent { speculate(it) }
+        return booster
+    }
 
     override fun getBoosters(): Set<BOOSTER> = toBoosters(prefilteredBoosters)
 
-    override fun getBoosters(filter: Predicate<BOOSTER>) = toBoosters(prefilteredBoosters.filter(filter))
+    override fun getBoosters(filter: Predicate<BOOSTER>): Set<BOOSTER> {
+        val bs = toBoosters(prefilteredBoosters(filter))
+        speculate(bs)
+        return bs
+    }
+
+    /**
+     * Returns the JSON exports of the boosters of the current [snapshot], or `null`
+     * when the first indexing run hasn't finished yet. The exports are made once per
+     * snapshot, and their ETags change whenever a new snapshot is made.
+     */
+    fun export(): CatalogExport? =
+            snapshot?.derive(CatalogExport::class.java) { CatalogExport(it, exportTagPrefix + "-" + it.version) }
+
+    /**
+     * Returns the changes to the boosters since the snapshot with the given version up
+     * to the current [snapshot]. When that version is no longer in the history of recent
+     * snapshots (see [AbstractBuilder.snapshotHistory]), or isn't known at all, the
+     * changes say a full resync is required. Boosters count as modified when their
+     * [Booster.exportableData] changed.
+     */
+    open fun changesSince(version: Long): CatalogChanges<BOOSTER> {
+        val (from, to) = snapshotsSince(version) ?: return CatalogChanges(version, snapshot?.version ?: 0, true, Delta.empty())
+        return to.derive(CatalogChanges::class.java to from.version) {
+            CatalogChanges(from.version, to.version, false, boosterChanges(from, to))
+        }
+    }
+
+    /**
+     * Returns the snapshot with the given version from the history together with the
+     * current snapshot, or `null` when there's no such snapshot
+     */
+    protected fun snapshotsSince(version: Long): Pair<CatalogSnapshot<BOOSTER>, CatalogSnapshot<BOOSTER>>? {
+        val current = snapshot ?: return null
+        if (version == current.version) {
+            return current to current
+        }
+        val from = synchronized(history) { history.find { it.version == version } } ?: return null
+        return from to current
+    }
+
+    protected fun boosterChanges(from: CatalogSnapshot<BOOSTER>, to: CatalogSnapshot<BOOSTER>): Delta<BOOSTER> =
+            Delta.between(from.boosters, to.boosters, { it.id }) { a, b -> a.exportableData == b.exportableData }
+
+    /**
+     * Starts a speculative fetch of the [Booster]'s content when that's enabled,
+     * see [AbstractBuilder.speculativeFetch]
+     */
+    protected fun speculate(booster: BOOSTER) {
+        speculativeFetcher?.submit(booster)
+    }
+
+    /**
+     * Starts speculative fetches of the content of the given [Booster]s, but
+     * only if there are just a few of them
+     */
+    protected fun speculate(boosters: Collection<BOOSTER>) {
+        val sf = speculativeFetcher
+        if (sf != null && boosters.size <= sf.maxCandidates) {
+            boosters.forEach { sf.submit(it) }
+        }
+    }
+
+    /**
+     * Starts speculative fetches of the content of the [Booster]s that pass the given
+     * filter, but only if there are just a few of them
+     */
+    protected fun speculate(filter: Predicate<BOOSTER>) {
+        val sf = speculativeFetcher
+        if (sf != null) {
+            val candidates: List<BOOSTER> = prefilteredBoosters
+                    .filter(filter)
+                    .limit(sf.maxCandidates + 1L)
+                    .collect(Collectors.toList())
+            speculate(candidates)
+        }
+    }
 
     private fun toBoosters(bs: Stream<BOOSTER>): Set<BOOSTER> = bs.collect(Collectors.toSet())
 
@@ -212,6 +913,13 @@ abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constr
         boosters.addAll(catalog.map { b -> newBooster(b, this) })
     }
 
+    /**
+     * Called for every new snapshot before it becomes the current one, to derive the data
+     * that would otherwise have to be computed when it's first asked for
+     */
+    protected open fun prepareSnapshot(snapshot: CatalogSnapshot<BOOSTER>) {
+    }
+
     protected open fun postIndex(boosters: MutableSet<BOOSTER>) {
         // Notify the listener of all the boosters that were added
         // (this excludes ignored boosters and those filtered by the global indexFilter)
@@ -229,6 +937,15 @@ abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constr
 
     protected abstract fun newBooster(data: Map<String, Any?>, boosterFetcher: BoosterFetcher): BOOSTER
 
+    private class ContentRecord(val path: Path, val gitRepo: String?, val gitRef: String?, val manifest: FileManifest?) {
+        @Volatile
+        var archive: CachedArchive? = null
+
+        val isCached get() = isCached(path)
+
+        fun isVersionOf(booster: Booster) = gitRepo == booster.gitRepo && gitRef == booster.gitRef
+    }
+
     /**
      * [BoosterCatalogService] Builder class
      *
@@ -254,6 +971,36 @@ abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constr
 
         var executor: ExecutorService? = null
 
+        var fetchRetryPolicy = FetchRetryPolicy()
+
+        var maxStaleness: Duration? = null
+
+        var prefetchLimit = Int.MAX_VALUE
+
+        var speculativeFetchDeadline: Duration? = null
+
+        var speculativeFetchCandidates = 3
+
+        var copyStrategy = CopyStrategy.COPY
+
+        var copyParallelism = 1
+
+        var zipCompressionLevel = Deflater.DEFAULT_COMPRESSION
+
+        var zipParallelism = 1
+
+        var deduplicateContent = false
+
+        var memoryBudget = 0L
+
+        var janitorThreads = 0
+
+        var janitorDeletionsPerSecond = 0
+
+        var snapshotHistory = 8
+
+        var parallelQueryThreshold: Duration = Duration.ofNanos(QueryExecutor.DEFAULT_THRESHOLD_NANOS)
+
         open fun catalogRef(catalogRef: String): AbstractBuilder<BOOSTER, CATALOG> {
             this.catalogRef = catalogRef
             return this
@@ -294,6 +1041,128 @@ abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constr
             return this
         }
 
+        open fun fetchRetryPolicy(fetchRetryPolicy: FetchRetryPolicy): AbstractBuilder<BOOSTER, CATALOG> {
+            this.fetchRetryPolicy = fetchRetryPolicy
+            return this
+        }
+
+        /**
+         * Enables stale-while-revalidate: when the ref of a booster changes, the content
+         * of the previous ref will be served while the new one is being fetched, for at
+         * most the given amount of time.
+         */
+        open fun staleWhileRevalidate(maxStaleness: Duration): AbstractBuilder<BOOSTER, CATALOG> {
+            this.maxStaleness = maxStaleness
+            return this
+        }
+
+        /**
+         * Sets the maximum number of boosters that will be fetched by `prefetchBoosters()`
+         */
+        open fun prefetchLimit(prefetchLimit: Int): AbstractBuilder<BOOSTER, CATALOG> {
+            this.prefetchLimit = prefetchLimit
+            return this
+        }
+
+        /**
+         * Enables speculative fetching: when a query resolves to a single booster, or
+         * to no more than `maxCandidates` boosters, their content will be fetched one at a
+         * time on a low priority background thread. Fetches that haven't started before the
+         * deadline are dropped. Speculative fetching is disabled by default.
+         */
+        open fun speculativeFetch(deadline: Duration, maxCandidates: Int): AbstractBuilder<BOOSTER, CATALOG> {
+            this.speculativeFetchDeadline = deadline
+            this.speculativeFetchCandidates = maxCandidates
+            return this
+        }
+
+        /**
+         * Determines how [copy] materializes booster files in a project, defaults to [CopyStrategy.COPY].
+         * See [CopyStrategy.HARD_LINK] for what linked projects can't be used for.
+         */
+        open fun copyStrategy(strategy: CopyStrategy): AbstractBuilder<BOOSTER, CATALOG> {
+            this.copyStrategy = strategy
+            return this
+        }
+
+        /**
+         * The number of threads a single [copy] can use, defaults to 1 which means the
+         * booster is copied on the calling thread. See [ParallelCopier].
+         */
+        open fun copyParallelism(parallelism: Int): AbstractBuilder<BOOSTER, CATALOG> {
+            this.copyParallelism = parallelism
+            return this
+        }
+
+        /**
+         * The compression level used by [zip], from 0 to 9, see [Deflater]
+         */
+        open fun zipCompressionLevel(level: Int): AbstractBuilder<BOOSTER, CATALOG> {
+            this.zipCompressionLevel = level
+            return this
+        }
+
+        /**
+         * The number of threads a single [zip] can use for compressing files, defaults
+         * to 1 which means the files are compressed on the calling thread. See [ParallelZipper].
+         */
+        open fun zipParallelism(parallelism: Int): AbstractBuilder<BOOSTER, CATALOG> {
+            this.zipParallelism = parallelism
+            return this
+        }
+
+        /**
+         * Stores files that the cached boosters have in common only once, see [BlobStore].
+         * Content of booster versions that are no longer in the catalog is deleted when
+         * re-indexing, or once it's no longer being copied or zipped. Combine with [CopyStrategy.HARD_LINK]
+         * to copy shared files for free, when the projects don't need to be writable.
+         */
+        open fun deduplicateContent(enabled: Boolean): AbstractBuilder<BOOSTER, CATALOG> {
+            this.deduplicateContent = enabled
+            return this
+        }
+
+        /**
+         * Enables keeping the content of the most recently used cached boosters in memory,
+         * using at most the given number of bytes, so [copy] and [zip] don't need to read
+         * their files from disk. Content that doesn't fit is read from disk as usual.
+         */
+        open fun memoryTier(budget: Long): AbstractBuilder<BOOSTER, CATALOG> {
+            this.memoryBudget = budget
+            return this
+        }
+
+        /**
+         * Enables deleting the cached content of booster versions that are no longer in the
+         * catalog after every (re-)index, see [collectStaleContent]. The content is deleted
+         * in the background on at most `threads` threads, deleting no more than the given
+         * number of content directories per second, 0 meaning no limit.
+         */
+        open fun contentJanitor(threads: Int, deletionsPerSecond: Int): AbstractBuilder<BOOSTER, CATALOG> {
+            this.janitorThreads = threads
+            this.janitorDeletionsPerSecond = deletionsPerSecond
+            return this
+        }
+
+        /**
+         * Sets the number of recent snapshots to remember, including the current one, which
+         * determines how far back [changesSince] can go. Defaults to 8.
+         */
+        open fun snapshotHistory(size: Int): AbstractBuilder<BOOSTER, CATALOG> {
+            this.snapshotHistory = size
+            return this
+        }
+
+        /**
+         * Sets how long filtering the boosters of a query is expected to take, based on
+         * the number of boosters and the measured cost of the predicate, before it's split
+         * over at most [LauncherConfiguration.queryMaxThreads] threads. Defaults to 5ms.
+         */
+        open fun parallelQueryThreshold(threshold: Duration): AbstractBuilder<BOOSTER, CATALOG> {
+            this.parallelQueryThreshold = threshold
+            return this
+        }
+
         open fun rootDir(root: Path): AbstractBuilder<BOOSTER, CATALOG> {
             this.rootDir = root
             return this
@@ -317,10 +1186,30 @@ abstract class AbstractBoosterCatalogService<BOOSTER : Booster> protected constr
                         ".git", ".travis", ".travis.yml",
                         ".ds_store", ".obsidian", ".gitmodules"))
 
-        private const val CLONED_BOOSTERS_DIR = ".boosters"
+        private val EXCLUDED_PROJECT_FILTER = Predicate<Path> { p -> !EXCLUDED_PROJECT_FILES.contains(p.toFile().name.toLowerCase()) }
+
+        private const val MANIFEST_SUFFIX = ".manifest.json"
+
+        private const val ARCHIVE_SUFFIX = ".zip"
+
+        private fun blobKey(id: String, gitRepo: String?, gitRef: String?) = "$id#$gitRepo#$gitRef"
+
+        // Only content in the cache never changes, so only there we can store derived data
+        private fun isCached(path: Path) =
+                path.parent?.parent?.fileName?.toString() == NativeGitCatalogSourceProvider.CLONED_BOOSTERS_DIR
 
         private val logger = Logger.getLogger(AbstractBoosterCatalogService::class.java.name)
 
+        private val batchCopyThreadCount = AtomicInteger()
+
+        private val batchCopyPool by lazy {
+            Executors.newFixedThreadPool(LauncherConfiguration.copyMaxThreads()) { r ->
+                val thread = Thread(r, "batch-copy-" + batchCopyThreadCount.incrementAndGet())
+                thread.isDaemon = true
+                thread
+            }
+        }
+
         fun ignored(ignored: Boolean) = Predicate { b: Booster -> b.isIgnore == ignored }
     }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import java.util.logging.Logger
+
+/**
+ * A known key in the untyped data of boosters and categories together with the type
+ * of its value. Reading an attribute checks the value against that type, converting
+ * it where that makes sense, so the value only needs to be read once and can then
+ * be kept in a typed field. Values that can't be used are logged and treated
+ * as if they were missing.
+ */
+internal class Attribute<T : Any> private constructor(val key: String, private val type: String, private val convert: (Any) -> T?) {
+
+    /**
+     * Returns the value of this attribute in the data, or `null` when it's missing
+     * or invalid. The owner of the data is only used to report invalid values.
+     */
+    fun read(data: Map<String, Any?>, owner: Any): T? {
+        val value = data[key] ?: return null
+        val result = convert(value)
+        if (result == null) {
+            logger.warning { "Ignoring value '$value' of '$key' in $owner, expected a $type" }
+        }
+        return result
+    }
+
+    companion object {
+        private val logger = Logger.getLogger(Attribute::class.java.name)
+
+        fun string(key: String) = Attribute(key, "string") {
+            when (it) {
+                is String -> it
+                is Number, is Boolean -> it.toString()
+                else -> null
+            }
+        }
+
+        fun boolean(key: String) = Attribute(key, "boolean") {
+            when {
+                it is Boolean -> it
+                it is String && it.equals("true", true) -> true
+                it is String && it.equals("false", true) -> false
+                else -> null
+            }
+        }
+    }
+}
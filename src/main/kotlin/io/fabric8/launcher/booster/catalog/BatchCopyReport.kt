@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import java.nio.file.Path
+import java.time.Duration
+
+/**
+ * The outcome of copying boosters to many targets at once, see
+ * [AbstractBoosterCatalogService.copyAll]. Each target either ended up in
+ * `copied`, with the path of the booster content it was copied from, or in
+ * `failures` with the reason it failed.
+ */
+class BatchCopyReport(
+        val copied: Map<Path, Path>,
+        val failures: Map<Path, Exception>,
+        val files: Long,
+        val bytes: Long,
+        val elapsed: Duration) {
+
+    val filesPerSecond: Double get() = files / seconds
+
+    val megabytesPerSecond: Double get() = bytes / (1024.0 * 1024.0) / seconds
+
+    private val seconds get() = Math.max(elapsed.toNanos(), 1L) / 1e9
+
+    override fun toString() =
+            "Copied ${copied.size} targets (${failures.size} failed), $files files, $bytes bytes in ${elapsed.toMillis()}ms: " +
+                    String.format("%.1f files/s, %.1f MB/s", filesPerSecond, megabytesPerSecond)
+}
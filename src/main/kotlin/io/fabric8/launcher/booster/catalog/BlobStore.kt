@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import io.fabric8.launcher.booster.FileManifest
+import io.fabric8.launcher.booster.catalog.utils.readMetadata
+import io.fabric8.launcher.booster.catalog.utils.writeJson
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.util.logging.Level
+import java.util.logging.Logger
+
+/**
+ * Keeps a single copy of every unique file of the booster contents in the cache. Each file
+ * is stored once under its hash, and the files in the content directories are turned into
+ * hard links to those blobs, so files that boosters (or versions of a booster) have in common
+ * only take up disk space once and can be copied into projects by linking them.
+ * Because the blobs are shared they're made read-only.
+ * The store keeps track of which content directories reference which blobs, once no
+ * content directory references a blob anymore it gets deleted.
+ */
+class BlobStore(val root: Path) {
+
+    private class Version(val path: Path, val blobs: Set<String>)
+
+    private val versions = HashMap<String, Version>()
+
+    private val refCounts = HashMap<String, Int>()
+
+    @Volatile
+    private var disabled = false
+
+    init {
+        load()
+    }
+
+    /**
+     * Moves the files of a content directory into the store, leaving hard links in their place.
+     * The key identifies the version of the content, adding a version that was added before
+     * does nothing.
+     */
+    @Synchronized
+    fun add(key: String, dir: Path, manifest: FileManifest) {
+        if (disabled || versions[key]?.path == dir) {
+            return
+        }
+        val blobs = HashSet<String>()
+        try {
+            for (e in manifest.files) {
+                val hash = e.sha256 ?: continue
+                // Files with the same contents but different modes can't share a blob
+                val blob = hash + "-" + Integer.toOctalString(e.mode)
+                link(dir.resolve(e.path), blobPath(blob))
+                blobs.add(blob)
+            }
+        } catch (e: IOException) {
+            logger.log(Level.WARNING, "Couldn't add content '$dir' to the blob store, disabling it", e)
+            disabled = true
+        } catch (e: UnsupportedOperationException) {
+            logger.log(Level.WARNING, "The file system doesn't support hard links, disabling the blob store", e)
+            disabled = true
+        }
+        // Even when we failed halfway the blobs that were linked are in use
+        versions.remove(key)?.let { release(it) }
+        blobs.forEach { refCounts[it] = (refCounts[it] ?: 0) + 1 }
+        versions[key] = Version(dir, blobs)
+        save()
+    }
+
+    /**
+     * Forgets about all versions except the ones with the given keys, deleting the blobs
+     * that aren't used anymore. Returns the content directories of the forgotten versions,
+     * it's up to the caller to delete them.
+     */
+    @Synchronized
+    fun retain(keys: Set<String>): List<Path> {
+        val released = versions.filterKeys { it !in keys }
+        for ((key, version) in released) {
+            versions.remove(key)
+            release(version)
+        }
+        if (released.isNotEmpty()) {
+            logger.info { "Released ${released.size} booster versions from the blob store" }
+            save()
+        }
+        return released.values.map { it.path }
+    }
+
+    /**
+     * The number of content directories that reference the given blob
+     */
+    @Synchronized
+    fun refCount(blob: String) = refCounts[blob] ?: 0
+
+    private fun release(version: Version) {
+        for (blob in version.blobs) {
+            val count = (refCounts[blob] ?: 1) - 1
+            if (count > 0) {
+                refCounts[blob] = count
+            } else {
+                refCounts.remove(blob)
+                try {
+                    Files.deleteIfExists(blobPath(blob))
+                } catch (e: IOException) {
+                    logger.log(Level.WARNING, "Couldn't delete blob '$blob'", e)
+                }
+            }
+        }
+    }
+
+    private fun link(file: Path, blob: Path) {
+        if (!Files.exists(blob)) {
+            Files.createDirectories(blob.parent)
+            file.toFile().setWritable(false, false)
+            try {
+                Files.createLink(blob, file)
+                return
+            } catch (e: java.nio.file.FileAlreadyExistsException) {
+                // Someone else stored the same content in the meantime
+            }
+        }
+        if (!Files.isSameFile(blob, file)) {
+            val tmp = file.resolveSibling(file.fileName.toString() + ".blob")
+            Files.deleteIfExists(tmp)
+            Files.createLink(tmp, blob)
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        }
+    }
+
+    private fun blobPath(blob: String) = root.resolve(blob.substring(0, 2)).resolve(blob)
+
+    private fun load() {
+        val file = root.resolve(VERSIONS_FILE)
+        if (!Files.isRegularFile(file)) {
+            return
+        }
+        try {
+            for ((key, value) in readMetadata(file)) {
+                val data = value as Map<*, *>
+                val blobs = (data["blobs"] as List<*>).map { it as String }.toSet()
+                versions[key] = Version(root.resolveSibling(data["path"] as String), blobs)
+                blobs.forEach { refCounts[it] = (refCounts[it] ?: 0) + 1 }
+            }
+        } catch (e: Exception) {
+            logger.log(Level.WARNING, "Couldn't read the blob store versions from '$file'", e)
+        }
+    }
+
+    private fun save() {
+        try {
+            Files.createDirectories(root)
+            val data = versions.mapValues { (_, v) ->
+                mapOf("path" to root.parent.relativize(v.path).toString(), "blobs" to v.blobs.toList())
+            }
+            writeJson(root.resolve(VERSIONS_FILE), data)
+        } catch (e: IOException) {
+            logger.log(Level.WARNING, "Couldn't save the blob store versions", e)
+        }
+    }
+
+    companion object {
+        /**
+         * The folder, next to the folder with the cloned boosters, where the blobs are stored
+         */
+        const val BLOBS_DIR = ".blobs"
+
+        private const val VERSIONS_FILE = "versions.json"
+
+        private val logger = Logger.getLogger(BlobStore::class.java.name)
+    }
+}
@@ -34,32 +34,31 @@ open class Booster(val data: Map<String, Any?>, val boosterFetcher: BoosterFetch
     open val exportableData: Map<String, Any?>
         get() = data
 
+    // The attributes below are read from the data once, the data itself doesn't change.
+    // The id is only known once the booster has been fully constructed.
+    private val declaredName = NAME.read(data, data)
+
     val name: String
-        get() = Objects.toString(data["name"], id)
+        get() = declaredName ?: id
 
-    val description: String
-        get() = Objects.toString(data["description"], "No description available")
+    val description: String = DESCRIPTION.read(data, data) ?: "No description available"
 
     /**
      * @return a boolean indicating if the booster should be ignored or not
      */
-    val isIgnore: Boolean
-        get() = java.lang.Boolean.parseBoolean(Objects.toString(data["ignore"], "false"))
+    val isIgnore: Boolean = IGNORE.read(data, data) ?: false
 
     /**
      * @return the source/git/url
      */
-    val gitRepo: String?
-        get() = getDataValue<String>(data, "repo", null)
+    val gitRepo: String? = REPO.read(data, data)
 
     /**
      * @return the source/git/ref
      */
-    val gitRef: String?
-        get() = getDataValue<String>(data, "ref", null)
+    val gitRef: String? = REF.read(data, data)
 
-    val metadata: Map<String, Any?>
-        get() = data[KEY_METADATA] as Map<String, Any?>? ?: emptyMap()
+    val metadata: Map<String, Any?> = data[KEY_METADATA] as Map<String, Any?>? ?: emptyMap()
 
     /**
      * @param key the key to look up in the booster's meta _data section. Can take the form
@@ -79,12 +78,31 @@ open class Booster(val data: Map<String, Any?>, val boosterFetcher: BoosterFetch
     /**
      * Clones a Booster repo and provides the path where to find it as a result.
      * Will automatically retry on the next call if the result of a previous
-     * call terminated with an exception.
+     * call terminated with an exception or if it returned a fallback that has
+     * since expired. A fallback that's being refreshed in the background gets
+     * replaced by the refreshed content as soon as it's available.
      */
-    @Synchronized
     fun content(): CompletableFuture<Path> {
+        if (boosterFetcher is ContentAccessListener) {
+            boosterFetcher.contentAccessed(this)
+        }
+        return fetchContent()
+    }
+
+    /**
+     * Works like [content] but without counting as an access
+     */
+    @Synchronized
+    internal fun fetchContent(): CompletableFuture<Path> {
         var cr = contentResult
-        if (cr == null || cr.isCompletedExceptionally) {
+        if (cr is ContentResult) {
+            val refresh = cr.refresh
+            if (refresh != null && (refresh.isDone && !refresh.isCompletedExceptionally || cr.isExpired)) {
+                cr = refresh
+                contentResult = cr
+            }
+        }
+        if (cr == null || cr.isCompletedExceptionally || cr is ContentResult && cr.isExpired) {
             cr = boosterFetcher.fetchBoosterContent(this)
             contentResult = cr
         }
@@ -123,6 +141,12 @@ open class Booster(val data: Map<String, Any?>, val boosterFetcher: BoosterFetch
     companion object {
         private const val KEY_METADATA = "metadata"
 
+        private val NAME = Attribute.string("name")
+        private val DESCRIPTION = Attribute.string("description")
+        private val IGNORE = Attribute.boolean("ignore")
+        private val REPO = Attribute.string("repo")
+        private val REF = Attribute.string("ref")
+
         @JvmStatic
         fun <T> getDataValue(data: Map<String, Any?>, key: String, defaultValue: T?): T? {
             val keys = key.split(Pattern.quote("/").toRegex()).dropLastWhile { it.isEmpty() }.toTypedArray()
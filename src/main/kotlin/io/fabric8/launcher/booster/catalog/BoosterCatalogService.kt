@@ -1,8 +1,10 @@
 package io.fabric8.launcher.booster.catalog
 
+import io.fabric8.launcher.booster.CopyStrategy
 import io.fabric8.launcher.booster.catalog.spi.BoosterCatalogSourceProvider
 
 import java.nio.file.Path
+import java.time.Duration
 import java.util.concurrent.ExecutorService
 import java.util.function.Predicate
 
@@ -20,6 +22,19 @@ class BoosterCatalogService protected constructor(config: Builder) : AbstractBoo
         override fun listener(listener: (booster: Booster) -> Any) = super.listener(listener) as Builder
         override fun transformer(transformer: (data: Map<String, Any?>) -> Map<String, Any?>) = super.transformer(transformer) as Builder
         override fun executor(executor: ExecutorService) = super.executor(executor) as Builder
+        override fun fetchRetryPolicy(fetchRetryPolicy: FetchRetryPolicy) = super.fetchRetryPolicy(fetchRetryPolicy) as Builder
+        override fun staleWhileRevalidate(maxStaleness: Duration) = super.staleWhileRevalidate(maxStaleness) as Builder
+        override fun prefetchLimit(prefetchLimit: Int) = super.prefetchLimit(prefetchLimit) as Builder
+        override fun speculativeFetch(deadline: Duration, maxCandidates: Int) = super.speculativeFetch(deadline, maxCandidates) as Builder
+        override fun copyStrategy(strategy: CopyStrategy) = super.copyStrategy(strategy) as Builder
+        override fun copyParallelism(parallelism: Int) = super.copyParallelism(parallelism) as Builder
+        override fun zipCompressionLevel(level: Int) = super.zipCompressionLevel(level) as Builder
+        override fun zipParallelism(parallelism: Int) = super.zipParallelism(parallelism) as Builder
+        override fun deduplicateContent(enabled: Boolean) = super.deduplicateContent(enabled) as Builder
+        override fun memoryTier(budget: Long) = super.memoryTier(budget) as Builder
+        override fun contentJanitor(threads: Int, deletionsPerSecond: Int) = super.contentJanitor(threads, deletionsPerSecond) as Builder
+        override fun snapshotHistory(size: Int) = super.snapshotHistory(size) as Builder
+        override fun parallelQueryThreshold(threshold: Duration) = super.parallelQueryThreshold(threshold) as Builder
         override fun rootDir(root: Path) = super.rootDir(root) as Builder
         override fun build() = BoosterCatalogService(this)
     }
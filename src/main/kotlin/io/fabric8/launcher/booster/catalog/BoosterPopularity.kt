@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import io.fabric8.launcher.booster.catalog.utils.readMetadata
+import io.fabric8.launcher.booster.catalog.utils.writeJson
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+import java.util.logging.Level
+import java.util.logging.Logger
+
+/**
+ * Counts how many times the content of each [Booster] was accessed.
+ * When a file is given the counts are loaded from it and periodically
+ * written back to it, so they survive restarts.
+ */
+class BoosterPopularity(private val file: Path?) {
+
+    private val counts = ConcurrentHashMap<String, AtomicLong>()
+
+    private val dirty = AtomicBoolean(false)
+
+    @Volatile
+    private var lastSave = System.nanoTime()
+
+    init {
+        if (file != null && Files.isRegularFile(file)) {
+            try {
+                readMetadata(file).forEach { (id, count) ->
+                    if (count is Number) {
+                        counts[id] = AtomicLong(count.toLong())
+                    }
+                }
+            } catch (e: Exception) {
+                logger.log(Level.WARNING, "Could not read booster popularity from $file", e)
+            }
+        }
+    }
+
+    /**
+     * Records an access to the given booster
+     * @return `true` if enough time has passed since the counts were last saved
+     */
+    fun record(booster: Booster): Boolean {
+        counts.computeIfAbsent(booster.id) { AtomicLong() }.incrementAndGet()
+        dirty.set(true)
+        return file != null && System.nanoTime() - lastSave > SAVE_INTERVAL
+    }
+
+    fun count(booster: Booster): Long = counts[booster.id]?.get() ?: 0L
+
+    /**
+     * Returns the given boosters ordered from most to least accessed.
+     * Boosters with the same count are ordered by id.
+     */
+    fun <BOOSTER : Booster> sort(boosters: Collection<BOOSTER>): List<BOOSTER> =
+            boosters.sortedWith(compareByDescending<BOOSTER> { count(it) }.thenBy { it.id })
+
+    /**
+     * Writes the counts to the file, if there were any changes since the last time
+     */
+    @Synchronized
+    fun save() {
+        if (file == null || !dirty.getAndSet(false)) {
+            return
+        }
+        lastSave = System.nanoTime()
+        try {
+            Files.createDirectories(file.toAbsolutePath().parent)
+            writeJson(file, counts.mapValues { it.value.get() })
+        } catch (e: Exception) {
+            dirty.set(true)
+            logger.log(Level.WARNING, "Could not write booster popularity to $file", e)
+        }
+    }
+
+    companion object {
+        const val POPULARITY_FILE = ".popularity.json"
+
+        private val SAVE_INTERVAL = TimeUnit.MINUTES.toNanos(1)
+
+        private val logger = Logger.getLogger(BoosterPopularity::class.java.name)
+    }
+}
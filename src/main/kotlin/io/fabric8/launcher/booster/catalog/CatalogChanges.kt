@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+/**
+ * The items that were added, removed or modified between two versions of the
+ * catalog. Removed items are identified by their id.
+ */
+class Delta<T> internal constructor(val added: List<T>, val removed: List<String>, val modified: List<T>) {
+
+    val isEmpty get() = added.isEmpty() && removed.isEmpty() && modified.isEmpty()
+
+    override fun toString() = "Delta [added=${added.size}, removed=${removed.size}, modified=${modified.size}]"
+
+    companion object {
+        private val EMPTY = Delta<Any>(emptyList(), emptyList(), emptyList())
+
+        @Suppress("UNCHECKED_CAST")
+        internal fun <T> empty() = EMPTY as Delta<T>
+
+        /**
+         * Compares the items by their id, items with the same id that are not the same
+         * according to `same` are considered modified
+         */
+        internal fun <T> between(old: Collection<T>, new: Collection<T>, id: (T) -> String, same: (T, T) -> Boolean): Delta<T> {
+            val before = old.associateBy(id)
+            val after = new.associateBy(id)
+            val added = after.values.filter { !before.containsKey(id(it)) }
+            val removed = before.keys.filter { !after.containsKey(it) }
+            val modified = after.values.filter { n -> before[id(n)]?.let { !same(it, n) } ?: false }
+            return Delta(added, removed, modified)
+        }
+    }
+}
+
+/**
+ * The changes to the boosters of the catalog going from the snapshot with version
+ * `fromVersion` to the one with `toVersion`, see [AbstractBoosterCatalogService.changesSince].
+ * When [isFullResyncRequired] is `true` the changes can't be determined, because the
+ * older snapshot is no longer known, and the whole catalog should be fetched again.
+ */
+open class CatalogChanges<BOOSTER : Booster> internal constructor(
+        val fromVersion: Long,
+        val toVersion: Long,
+        val isFullResyncRequired: Boolean,
+        val boosters: Delta<BOOSTER>) {
+
+    override fun toString() =
+            if (isFullResyncRequired) "Changes since $fromVersion to $toVersion: full resync required"
+            else "Changes since $fromVersion to $toVersion: boosters $boosters"
+}
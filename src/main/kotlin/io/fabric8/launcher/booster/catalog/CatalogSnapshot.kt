@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * The boosters of a catalog as they were at the end of an indexing run, leaving out
+ * the ignored ones and the ones that don't pass the catalog's filter. The boosters are
+ * ordered by id. Every indexing run results in a new snapshot with a higher version.
+ * Because a snapshot never changes, anything derived from its boosters only needs to
+ * be computed once, see [derive].
+ */
+class CatalogSnapshot<BOOSTER : Booster> internal constructor(val version: Long, val boosters: List<BOOSTER>) {
+
+    private val derived = ConcurrentHashMap<Any, Lazy<Any>>()
+
+    /**
+     * Returns the data stored under the given key, computing it from this snapshot the
+     * first time it's asked for. Threads asking for it at the same time wait for a single
+     * computation. The computation may itself derive other data, but not the same.
+     */
+    fun <T : Any> derive(key: Any, compute: (CatalogSnapshot<BOOSTER>) -> T): T {
+        // Only the holder is created inside computeIfAbsent(), which doesn't allow computations to derive other data
+        val holder = derived.computeIfAbsent(key) { lazy { compute(this) } }
+        @Suppress("UNCHECKED_CAST")
+        return holder.value as T
+    }
+}
@@ -0,0 +1,15 @@
+package io.fabric8.launcher.booster.catalog
+
+/*
+ * Interface that can be implemented by a {@link BoosterFetcher} that wants to know when
+ * the content of a {@link Booster} is used
+ */
+interface ContentAccessListener {
+    /**
+     * Called each time the content of a [Booster] is requested, whether it still
+     * needs to be fetched or not. Can be used to keep track of which boosters are
+     * used the most.
+     * @param booster The [Booster] whose content was requested
+     */
+    fun contentAccessed(booster: Booster)
+}
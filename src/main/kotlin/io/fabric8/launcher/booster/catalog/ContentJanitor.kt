@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import java.io.IOException
+import java.nio.file.FileVisitResult
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.SimpleFileVisitor
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.function.Supplier
+import java.util.logging.Logger
+import java.util.stream.Collectors
+
+/**
+ * Deletes the content directories in the folder with the cloned boosters that are no
+ * longer referenced, together with the files stored next to them. The deletions are
+ * done in the background on at most `threads` threads, and no more than
+ * `deletionsPerSecond` directories are deleted per second so the disk isn't swamped.
+ * Directories are checked again right before they get deleted, so content that got
+ * referenced in the meantime is left alone.
+ */
+internal class ContentJanitor(threads: Int, private val deletionsPerSecond: Int) {
+
+    private val executor = ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, LinkedBlockingQueue()) { r ->
+        val thread = Thread(r, "content-janitor-" + threadCount.incrementAndGet())
+        thread.isDaemon = true
+        thread
+    }.also { it.allowCoreThreadTimeOut(true) }
+
+    private val nextSlot = AtomicLong(System.nanoTime())
+
+    @Volatile
+    private var running: CompletableFuture<JanitorReport>? = null
+
+    /**
+     * Deletes the content directories, found two levels deep in `boostersDir`, for which
+     * the predicate returns `false`. When a collection is still running its result is
+     * returned instead of starting a new one.
+     */
+    @Synchronized
+    fun collect(boostersDir: Path, isReferenced: (Path) -> Boolean): CompletableFuture<JanitorReport> {
+        running?.let { if (!it.isDone) return it }
+        val deleted = ConcurrentHashMap.newKeySet<Path>()
+        val failures = ConcurrentHashMap<Path, IOException>()
+        val bytes = AtomicLong()
+        val result = CompletableFuture.supplyAsync(Supplier { candidates(boostersDir).filter { !isReferenced(it) } }, executor)
+                .thenCompose { candidates: List<Path> ->
+                    val deletions = candidates.map { dir ->
+                        CompletableFuture.runAsync(Runnable {
+                            acquire()
+                            if (!isReferenced(dir)) {
+                                try {
+                                    bytes.addAndGet(delete(dir))
+                                    deleted.add(dir)
+                                } catch (e: IOException) {
+                                    failures[dir] = e
+                                }
+                            }
+                        }, executor)
+                    }
+                    CompletableFuture.allOf(*deletions.toTypedArray())
+                }
+                .thenApply {
+                    val report = JanitorReport(deleted.toList(), bytes.get(), failures)
+                    logger.info { report.toString() }
+                    report
+                }
+        running = result
+        return result
+    }
+
+    private fun candidates(boostersDir: Path): List<Path> {
+        if (!Files.isDirectory(boostersDir)) {
+            return emptyList()
+        }
+        return Files.list(boostersDir).use { ids ->
+            ids.filter { Files.isDirectory(it) }.collect(Collectors.toList())
+        }.flatMap { idDir ->
+            Files.list(idDir).use { versions ->
+                // Names starting with a dot are clones that are still in progress
+                versions.filter { Files.isDirectory(it) && !it.fileName.toString().startsWith(".") }
+                        .collect(Collectors.toList())
+            }
+        }
+    }
+
+    private fun acquire() {
+        if (deletionsPerSecond <= 0) {
+            return
+        }
+        val interval = TimeUnit.SECONDS.toNanos(1) / deletionsPerSecond
+        val now = System.nanoTime()
+        val slot = nextSlot.updateAndGet { Math.max(it, now) + interval } - interval
+        if (slot > now) {
+            TimeUnit.NANOSECONDS.sleep(slot - now)
+        }
+    }
+
+    companion object {
+        private val threadCount = AtomicInteger()
+
+        private val logger = Logger.getLogger(ContentJanitor::class.java.name)
+
+        /**
+         * Deletes the directory, and the files next to it whose names start with the
+         * directory's name followed by a dot, returning the number of bytes freed.
+         * Unlike [io.fabric8.launcher.booster.Files.deleteRecursively] any error is thrown.
+         */
+        @Throws(IOException::class)
+        fun delete(dir: Path): Long {
+            var bytes = 0L
+            Files.walkFileTree(dir, object : SimpleFileVisitor<Path>() {
+                override fun visitFile(file: Path, attrs: BasicFileAttributes): FileVisitResult {
+                    Files.delete(file)
+                    bytes += attrs.size()
+                    return FileVisitResult.CONTINUE
+                }
+
+                override fun postVisitDirectory(d: Path, exc: IOException?): FileVisitResult {
+                    if (exc != null) {
+                        throw exc
+                    }
+                    Files.delete(d)
+                    return FileVisitResult.CONTINUE
+                }
+            })
+            val prefix = dir.fileName.toString() + "."
+            Files.newDirectoryStream(dir.parent) { it.fileName.toString().startsWith(prefix) && Files.isRegularFile(it) }.use { siblings ->
+                for (file in siblings) {
+                    bytes += Files.size(file)
+                    Files.delete(file)
+                }
+            }
+            return bytes
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import java.nio.file.Path
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+
+/**
+ * The result of fetching a [Booster]'s content. Besides the normal outcomes it can be
+ * completed with a fallback: a previously fetched version of the content that is handed
+ * out when the current one can't be obtained (yet). A fallback is only valid for a limited
+ * time, after which [Booster.content] will try to fetch the content again. If a [refresh]
+ * is in progress [Booster.content] will switch to it as soon as it has completed.
+ */
+internal class ContentResult : CompletableFuture<Path>() {
+    @Volatile
+    private var expiresAt = 0L
+
+    @Volatile
+    var isFallback = false
+        private set
+
+    @Volatile
+    var refresh: CompletableFuture<Path>? = null
+        private set
+
+    val isExpired: Boolean
+        get() = isFallback && System.nanoTime() - expiresAt >= 0
+
+    fun completeWithFallback(path: Path, validFor: Duration, refresh: CompletableFuture<Path>? = null): Boolean {
+        expiresAt = System.nanoTime() + validFor.toNanos()
+        this.refresh = refresh
+        isFallback = true
+        return complete(path)
+    }
+}
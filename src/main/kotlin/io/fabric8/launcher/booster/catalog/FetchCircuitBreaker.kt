@@ -0,0 +1,233 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import java.net.SocketException
+import java.net.SocketTimeoutException
+import java.net.UnknownHostException
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Determines how the catalog reacts to [Booster] content fetches that fail
+ *
+ * @param failureThreshold     the number of consecutive transient failures for a host after
+ *                             which the circuit for that host opens and fetches fail fast
+ * @param initialBackoff       the time to wait before allowing a new attempt once the circuit has opened
+ * @param maxBackoff           the backoff doubles with each failed attempt until it reaches this value
+ * @param serveLastGoodContent if `true` a previously fetched version of a [Booster]'s content
+ *                             will be returned when a fetch fails or isn't allowed
+ */
+data class FetchRetryPolicy @JvmOverloads constructor(
+        val failureThreshold: Int = 3,
+        val initialBackoff: Duration = Duration.ofSeconds(5),
+        val maxBackoff: Duration = Duration.ofMinutes(5),
+        val serveLastGoodContent: Boolean = false)
+
+/**
+ * Keeps track of failing content fetches per repository host. Once a host has failed
+ * [FetchRetryPolicy.failureThreshold] times in a row its circuit opens and no new fetches
+ * are allowed for that host until the backoff period has passed. After that a single
+ * trial fetch gets through: if it succeeds the circuit closes again, if it fails the
+ * circuit re-opens with twice the previous backoff.
+ * Only transient failures count (see [isTransient]), a missing repository or ref says
+ * nothing about the other repositories on the same host.
+ */
+class FetchCircuitBreaker @JvmOverloads constructor(
+        private val policy: FetchRetryPolicy,
+        private val clock: () -> Long = System::nanoTime) {
+
+    enum class State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * A read-only view of the state of the circuit for a single host
+     *
+     * @property retryIn the time left before fetches will be attempted again
+     */
+    class HostStatus(val host: String,
+                     val state: State,
+                     val consecutiveFailures: Int,
+                     val retryIn: Duration,
+                     val lastError: String?) {
+        override fun toString(): String {
+            return "HostStatus [host=$host, state=$state, consecutiveFailures=$consecutiveFailures, retryIn=$retryIn, lastError=$lastError]"
+        }
+    }
+
+    private class Circuit {
+        var failures = 0
+        var retryAt = 0L
+        var trialInProgress = false
+        var lastError: String? = null
+    }
+
+    private val circuits = ConcurrentHashMap<String, Circuit>()
+
+    /**
+     * Returns `true` if a fetch from the given host is allowed to proceed.
+     * Every call that returns `true` must be followed by a call to
+     * [success], [failure] or [abandon] for the same host.
+     */
+    fun tryAcquire(host: String): Boolean {
+        val circuit = circuits.computeIfAbsent(host) { Circuit() }
+        synchronized(circuit) {
+            return when (state(circuit)) {
+                State.CLOSED -> true
+                State.OPEN -> false
+                State.HALF_OPEN -> {
+                    if (circuit.trialInProgress) {
+                        false
+                    } else {
+                        circuit.trialInProgress = true
+                        true
+                    }
+                }
+            }
+        }
+    }
+
+    fun success(host: String) {
+        val circuit = circuits[host] ?: return
+        synchronized(circuit) {
+            circuit.failures = 0
+            circuit.trialInProgress = false
+            circuit.lastError = null
+        }
+    }
+
+    /**
+     * To be called when an allowed fetch failed. Failures that aren't transient
+     * end a trial fetch, just like [abandon], but don't count towards opening the circuit.
+     */
+    fun failure(host: String, error: Throwable) {
+        if (!isTransient(error)) {
+            abandon(host)
+            return
+        }
+        val circuit = circuits.computeIfAbsent(host) { Circuit() }
+        synchronized(circuit) {
+            circuit.failures++
+            circuit.trialInProgress = false
+            circuit.lastError = error.message ?: error.javaClass.name
+            if (circuit.failures >= policy.failureThreshold) {
+                circuit.retryAt = clock() + backoff(circuit.failures - policy.failureThreshold).toNanos()
+            }
+        }
+    }
+
+    /**
+     * To be called when an allowed fetch ended without a clear result, eg. when it got cancelled
+     */
+    fun abandon(host: String) {
+        val circuit = circuits[host] ?: return
+        synchronized(circuit) {
+            circuit.trialInProgress = false
+        }
+    }
+
+    /**
+     * The time left before the given host will be tried again, zero if fetches are allowed
+     */
+    fun retryIn(host: String): Duration {
+        val circuit = circuits[host] ?: return Duration.ZERO
+        synchronized(circuit) {
+            return if (state(circuit) == State.OPEN) Duration.ofNanos(Math.max(0L, circuit.retryAt - clock())) else Duration.ZERO
+        }
+    }
+
+    /**
+     * @return the status of all hosts that fetches have been attempted for
+     */
+    fun status(): Map<String, HostStatus> = circuits.entries.associate { (host, circuit) ->
+        synchronized(circuit) {
+            val state = state(circuit)
+            val retryIn = if (state == State.OPEN) Duration.ofNanos(circuit.retryAt - clock()) else Duration.ZERO
+            host to HostStatus(host, state, circuit.failures, retryIn, circuit.lastError)
+        }
+    }
+
+    private fun state(circuit: Circuit) = when {
+        circuit.failures < policy.failureThreshold -> State.CLOSED
+        clock() - circuit.retryAt < 0 -> State.OPEN
+        else -> State.HALF_OPEN
+    }
+
+    private fun backoff(attempt: Int): Duration {
+        val max = policy.maxBackoff.toNanos()
+        var nanos = policy.initialBackoff.toNanos()
+        for (i in 0 until attempt) {
+            if (nanos >= max / 2) {
+                return policy.maxBackoff
+            }
+            nanos *= 2
+        }
+        return Duration.ofNanos(Math.min(nanos, max))
+    }
+
+    companion object {
+        /**
+         * Returns the name of the host for the given git repository URL. Handles both
+         * proper URLs and the scp-like `user@host:path` syntax.
+         */
+        @JvmStatic
+        fun repositoryHost(repo: String?): String {
+            if (repo == null || repo.isBlank()) {
+                return UNKNOWN_HOST
+            }
+            val scheme = repo.indexOf("://")
+            val start = if (scheme >= 0) scheme + 3 else 0
+            val at = repo.indexOf('@', start)
+            val hostStart = if (at >= 0) at + 1 else start
+            val end = repo.indexOfAny(charArrayOf('/', ':'), hostStart)
+            val host = (if (end >= 0) repo.substring(hostStart, end) else repo.substring(hostStart)).toLowerCase()
+            return if (host.length == 0) UNKNOWN_HOST else host
+        }
+
+        /**
+         * Returns `true` if the given error, or one of its causes, is the kind of error that
+         * says the host couldn't be reached or didn't respond properly: network errors,
+         * timeouts and `git` processes that failed because of the connection to the remote.
+         * Errors like missing repositories or refs are specific to a single booster.
+         */
+        @JvmStatic
+        fun isTransient(error: Throwable): Boolean {
+            var e: Throwable? = error
+            while (e != null) {
+                if (e is SocketException || e is SocketTimeoutException || e is UnknownHostException) {
+                    return true
+                }
+                val message = e.message?.toLowerCase() ?: ""
+                if (message.startsWith("process timed out")
+                        || message.startsWith("process returned exit code") && TRANSIENT_GIT_ERRORS.any { message.contains(it) }) {
+                    return true
+                }
+                e = if (e.cause === e) null else e.cause
+            }
+            return false
+        }
+
+        // What git prints when it can't talk to the remote, the HTTP 5xx errors included
+        private val TRANSIENT_GIT_ERRORS = listOf(
+                "could not resolve host",
+                "temporary failure in name resolution",
+                "failed to connect",
+                "connection refused",
+                "connection reset",
+                "connection timed out",
+                "operation timed out",
+                "network is unreachable",
+                "no route to host",
+                "the remote end hung up unexpectedly",
+                "early eof",
+                "rpc failed",
+                "returned error: 5")
+
+        const val UNKNOWN_HOST = "<unknown>"
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import java.io.IOException
+import java.nio.file.Path
+
+/**
+ * The outcome of collecting stale booster content, see
+ * [AbstractBoosterCatalogService.collectStaleContent]
+ */
+class JanitorReport(
+        val deleted: List<Path>,
+        val bytesReclaimed: Long,
+        val failures: Map<Path, IOException>) {
+
+    override fun toString() =
+            "Deleted ${deleted.size} stale content directories, reclaiming $bytesReclaimed bytes" +
+                    if (failures.isEmpty()) "" else ", failed to delete ${failures.keys}"
+
+    companion object {
+        internal val EMPTY = JanitorReport(emptyList(), 0, emptyMap())
+    }
+}
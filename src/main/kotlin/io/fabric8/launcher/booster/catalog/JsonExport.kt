@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import org.json.simple.JSONValue
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.Deflater
+import java.util.zip.GZIPOutputStream
+
+/**
+ * Data serialized to JSON, together with a gzip compressed copy and a strong ETag.
+ * The data isn't serialized again until it changes, so serving it comes down to
+ * writing out one of the byte arrays, or nothing at all when the client's copy
+ * is still current (see [isNotModified]).
+ */
+class JsonExport internal constructor(
+        /**
+         * The entity tag, including its quotes, as it should be sent in an `ETag` header
+         */
+        val etag: String,
+        data: Any?) {
+
+    private val json = JSONValue.toJSONString(data).toByteArray(StandardCharsets.UTF_8)
+
+    private val gzipped = ByteArrayOutputStream(json.size / 4 + 32).also { bos ->
+        object : GZIPOutputStream(bos) {
+            init {
+                def.setLevel(Deflater.BEST_COMPRESSION)
+            }
+        }.use { it.write(json) }
+    }.toByteArray()
+
+    /**
+     * The number of bytes [writeTo] writes, to be sent in a `Content-Length` header
+     */
+    fun contentLength(gzip: Boolean) = if (gzip) gzipped.size else json.size
+
+    /**
+     * Writes the JSON, encoded as UTF-8, or its gzip compressed copy to the stream.
+     * The [OutputStream] isn't closed.
+     */
+    @Throws(IOException::class)
+    fun writeTo(os: OutputStream, gzip: Boolean) {
+        os.write(if (gzip) gzipped else json)
+    }
+
+    /**
+     * Returns `true` when the value of an `If-None-Match` header matches the ETag,
+     * meaning the client already has this JSON and a `304 Not Modified` can be sent
+     */
+    fun isNotModified(ifNoneMatch: String?): Boolean {
+        if (ifNoneMatch == null) {
+            return false
+        }
+        // If-None-Match uses the weak comparison, so a "W/" prefix doesn't matter
+        return ifNoneMatch.split(',').map { it.trim().removePrefix("W/") }.any { it == "*" || it == etag }
+    }
+}
+
+/**
+ * The JSON exports of a [CatalogSnapshot]: one of the data of all its boosters, and
+ * one per booster. They're serialized once, when they're first asked for.
+ */
+class CatalogExport internal constructor(private val snapshot: CatalogSnapshot<out Booster>, private val tag: String) {
+
+    private val boosters = ConcurrentHashMap<String, JsonExport>()
+
+    private val byId by lazy { snapshot.boosters.associateBy { it.id } }
+
+    /**
+     * The export of the [Booster.exportableData] of all the boosters in the snapshot, as a JSON array
+     */
+    val catalog by lazy { JsonExport("\"$tag\"", snapshot.boosters.map { it.exportableData }) }
+
+    /**
+     * Returns the export of the [Booster.exportableData] of the booster with the given id,
+     * or `null` when the snapshot doesn't have a booster with that id
+     */
+    fun booster(id: String): JsonExport? {
+        boosters[id]?.let { return it }
+        val booster = byId[id] ?: return null
+        return boosters.computeIfAbsent(id) { JsonExport("\"$tag\"", booster.exportableData) }
+    }
+}
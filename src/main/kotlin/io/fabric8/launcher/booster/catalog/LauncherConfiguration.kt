@@ -1,5 +1,7 @@
 package io.fabric8.launcher.booster.catalog
 
+import java.time.Duration
+
 object LauncherConfiguration {
 
     private val LAUNCHER_BOOSTER_CATALOG_REPOSITORY = getEnvVarOrSysProp(PropertyName.LAUNCHER_BOOSTER_CATALOG_REPOSITORY,
@@ -8,10 +10,26 @@ object LauncherConfiguration {
     private val LAUNCHER_BOOSTER_CATALOG_REF = getEnvVarOrSysProp(PropertyName.LAUNCHER_BOOSTER_CATALOG_REF,
             "master")
 
+    private val LAUNCHER_GIT_MAX_CONCURRENT_PROCESSES = getEnvVarOrSysProp(PropertyName.LAUNCHER_GIT_MAX_CONCURRENT_PROCESSES,
+            "4")
+
+    private val LAUNCHER_GIT_TIMEOUT = getEnvVarOrSysProp(PropertyName.LAUNCHER_GIT_TIMEOUT,
+            "300")
+
+    private val LAUNCHER_COPY_MAX_THREADS = getEnvVarOrSysProp(PropertyName.LAUNCHER_COPY_MAX_THREADS,
+            Runtime.getRuntime().availableProcessors().toString())
+
+    private val LAUNCHER_QUERY_MAX_THREADS = getEnvVarOrSysProp(PropertyName.LAUNCHER_QUERY_MAX_THREADS,
+            Runtime.getRuntime().availableProcessors().toString())
+
     interface PropertyName {
         companion object {
             const val LAUNCHER_BOOSTER_CATALOG_REPOSITORY = "LAUNCHER_BOOSTER_CATALOG_REPOSITORY"
             const val LAUNCHER_BOOSTER_CATALOG_REF = "LAUNCHER_BOOSTER_CATALOG_REF"
+            const val LAUNCHER_GIT_MAX_CONCURRENT_PROCESSES = "LAUNCHER_GIT_MAX_CONCURRENT_PROCESSES"
+            const val LAUNCHER_GIT_TIMEOUT = "LAUNCHER_GIT_TIMEOUT"
+            const val LAUNCHER_COPY_MAX_THREADS = "LAUNCHER_COPY_MAX_THREADS"
+            const val LAUNCHER_QUERY_MAX_THREADS = "LAUNCHER_QUERY_MAX_THREADS"
         }
     }
 
@@ -21,6 +39,30 @@ object LauncherConfiguration {
     @JvmStatic
     fun boosterCatalogRepositoryRef() = LAUNCHER_BOOSTER_CATALOG_REF
 
+    /**
+     * The maximum number of git processes that can run at the same time
+     */
+    @JvmStatic
+    fun gitMaxConcurrentProcesses() = LAUNCHER_GIT_MAX_CONCURRENT_PROCESSES.toInt()
+
+    /**
+     * The time a single git operation is allowed to take, set in seconds
+     */
+    @JvmStatic
+    fun gitTimeout(): Duration = Duration.ofSeconds(LAUNCHER_GIT_TIMEOUT.toLong())
+
+    /**
+     * The maximum number of threads used for copying booster contents, shared by all copies
+     */
+    @JvmStatic
+    fun copyMaxThreads() = LAUNCHER_COPY_MAX_THREADS.toInt()
+
+    /**
+     * The maximum number of threads used for filtering boosters in parallel, shared by all queries
+     */
+    @JvmStatic
+    fun queryMaxThreads() = LAUNCHER_QUERY_MAX_THREADS.toInt()
+
     private fun getEnvVarOrSysProp(name: String, defaultValue: String): String {
         var value: String? = System.getProperty(name)
         if (value.isNullOrBlank()) {
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import io.fabric8.launcher.booster.FileManifest
+import io.fabric8.launcher.booster.InMemoryContent
+import java.io.IOException
+import java.nio.file.Path
+import java.util.logging.Level
+import java.util.logging.Logger
+
+/**
+ * Keeps the content of the most recently used boosters in memory, using at most the
+ * given number of bytes. When content doesn't fit, the content that was used least
+ * recently is dropped from memory and will be read from disk again.
+ */
+internal class MemoryTier(private val budget: Long) {
+
+    private val contents = LinkedHashMap<Path, InMemoryContent>(16, 0.75f, true)
+
+    private var used = 0L
+
+    /**
+     * The number of bytes taken up by the content in memory
+     */
+    val usedBytes: Long
+        @Synchronized get() = used
+
+    /**
+     * Returns the content at the given path from memory, loading it when it's not
+     * there yet. Returns `null` when the content is larger than the budget or
+     * couldn't be loaded, in which case it should be read from disk.
+     */
+    fun get(path: Path, manifest: FileManifest): InMemoryContent? {
+        synchronized(this) {
+            contents[path]?.let { return it }
+        }
+        val size = manifest.files.fold(0L) { sum, e -> sum + e.size }
+        if (size > budget) {
+            return null
+        }
+        // Loading happens outside the lock, at worst the content gets loaded twice
+        val content = try {
+            InMemoryContent.load(path, manifest)
+        } catch (e: IOException) {
+            logger.log(Level.WARNING, "Couldn't load content '$path' into memory", e)
+            return null
+        }
+        synchronized(this) {
+            contents[path]?.let { return it }
+            contents[path] = content
+            used += content.size
+            val it = contents.entries.iterator()
+            while (used > budget && it.hasNext()) {
+                val eldest = it.next()
+                if (eldest.key != path) {
+                    used -= eldest.value.size
+                    it.remove()
+                    logger.fine { "Evicted content '${eldest.key}' from memory" }
+                }
+            }
+        }
+        return content
+    }
+
+    /**
+     * Drops the content at the given path from memory
+     */
+    @Synchronized
+    fun evict(path: Path) {
+        contents.remove(path)?.let { used -= it.size }
+    }
+
+    companion object {
+        private val logger = Logger.getLogger(MemoryTier::class.java.name)
+    }
+}
@@ -0,0 +1,18 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+/**
+ * A page of query results, taken from the snapshot with the given version. When
+ * there may be more results `cursor` can be passed to the query to get the next page,
+ * otherwise it's `null`.
+ */
+class Page<T> internal constructor(val items: List<T>, val cursor: String?, val snapshotVersion: Long) {
+
+    override fun toString() = "Page [items=${items.size}, cursor=$cursor, snapshotVersion=$snapshotVersion]"
+}
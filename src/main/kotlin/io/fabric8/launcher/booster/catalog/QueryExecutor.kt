@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import java.util.Collections
+import java.util.WeakHashMap
+import java.util.concurrent.Callable
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.function.Predicate
+import java.util.stream.Collectors
+import java.util.stream.Stream
+
+/**
+ * Filters lists of boosters either on the calling thread or, when that's expected to
+ * take longer than `thresholdNanos`, split over the threads of a bounded fork-join pool.
+ * The expected time is the number of boosters left to test times the estimated cost of
+ * testing a single booster. Costs are estimated per query, identified by the predicate
+ * itself unless the caller passes a key, by timing the first few tests. A query without
+ * an estimate yet times those tests on the calling thread before deciding how to test
+ * the rest. Lists that are too small to gain anything from running in parallel are
+ * always filtered sequentially.
+ */
+internal class QueryExecutor(private val thresholdNanos: Long) {
+
+    // Weak keys, so estimates don't outlive the predicates or keys they're for
+    private val costs = Collections.synchronizedMap(WeakHashMap<Any, Long>())
+
+    /**
+     * The estimated number of nanoseconds it takes to test a booster for the query with
+     * the given key, or `null` if there's no estimate yet
+     */
+    fun cost(key: Any): Long? = costs[key]
+
+    /**
+     * Returns the items that pass the filter, in the same order. Sequential filtering
+     * is done lazily, parallel filtering completes before the stream is returned.
+     * The key identifies the query for estimating its cost. The filter has to be safe
+     * to use from multiple threads.
+     */
+    @JvmOverloads
+    fun <T> filter(items: List<T>, filter: Predicate<in T>, key: Any = filter): Stream<T> {
+        if (items.size < MIN_PARALLEL_SIZE) {
+            return items.stream().filter(filter)
+        }
+        var head = emptyList<T>()
+        var rest = items
+        if (costs[key] == null) {
+            head = sample(items.subList(0, SAMPLES), filter, key)
+            rest = items.subList(SAMPLES, items.size)
+        }
+        val cost = costs[key] ?: 0L
+        if (cost * rest.size < thresholdNanos) {
+            return Stream.concat(head.stream(), rest.stream().filter(sampling(filter, key)))
+        }
+        // Streams run their parallel work in the pool that calls them
+        val matches = pool.submit(Callable { rest.parallelStream().filter(sampling(filter, key)).collect(Collectors.toList()) }).join()
+        return Stream.concat(head.stream(), matches.stream())
+    }
+
+    private fun <T> sample(items: List<T>, filter: Predicate<in T>, key: Any): List<T> {
+        val timings = LongArray(items.size)
+        val matches = items.filterIndexed { i, item ->
+            val start = System.nanoTime()
+            val result = filter.test(item)
+            timings[i] = System.nanoTime() - start
+            result
+        }
+        update(key, median(timings))
+        return matches
+    }
+
+    // Times the first few tests, and adds their median to the estimate for the query
+    private fun <T> sampling(filter: Predicate<in T>, key: Any): Predicate<T> {
+        val next = AtomicInteger()
+        val done = AtomicInteger()
+        val timings = AtomicLongArray(SAMPLES)
+        return Predicate { item ->
+            val i = if (next.get() < SAMPLES) next.getAndIncrement() else SAMPLES
+            if (i >= SAMPLES) {
+                filter.test(item)
+            } else {
+                val start = System.nanoTime()
+                val result = filter.test(item)
+                timings.set(i, System.nanoTime() - start)
+                if (done.incrementAndGet() == SAMPLES) {
+                    update(key, median(LongArray(SAMPLES) { timings.get(it) }))
+                }
+                result
+            }
+        }
+    }
+
+    // Unlike the average the median isn't thrown off by a single slow test, eg. one that had to wait for a GC
+    private fun median(timings: LongArray): Long {
+        timings.sort()
+        return timings[timings.size / 2]
+    }
+
+    private fun update(key: Any, sample: Long) {
+        costs.merge(key, sample) { old, new -> (old * 3 + new) / 4 }
+    }
+
+    companion object {
+        private const val SAMPLES = 16
+
+        private const val MIN_PARALLEL_SIZE = 256
+
+        /**
+         * The default time above which filtering is done in parallel
+         */
+        val DEFAULT_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(5)
+
+        private val pool: ForkJoinPool by lazy { ForkJoinPool(LauncherConfiguration.queryMaxThreads()) }
+    }
+}
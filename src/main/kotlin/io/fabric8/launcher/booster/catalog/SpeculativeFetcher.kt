@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.logging.Level
+import java.util.logging.Logger
+
+/**
+ * Fetches the content of [Booster]s that are likely to be needed soon, one at a time
+ * on a low priority thread. For the fetching itself to run on that thread as well the
+ * catalog must hand it to the executor returned by [executor]. A fetch that hasn't
+ * started within the given deadline
+ * is dropped, because by then the user has either used the booster (which fetched its
+ * content on demand) or moved on.
+ * Speculative fetches don't count as an access of the booster's content.
+ */
+internal class SpeculativeFetcher(private val deadline: Duration, val maxCandidates: Int) {
+
+    private val queued = ConcurrentHashMap.newKeySet<String>()
+
+    // The tasks handed to our executor while a speculative fetch is being started
+    private val deferred = ThreadLocal<MutableList<Runnable>>()
+
+    private val executor = ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, LinkedBlockingQueue()) { r ->
+        val thread = Thread(r, "speculative-fetch-" + threadCount.incrementAndGet())
+        thread.isDaemon = true
+        thread.priority = Thread.MIN_PRIORITY
+        thread
+    }.apply { allowCoreThreadTimeOut(true) }
+
+    fun submit(booster: Booster) {
+        if (!queued.add(booster.id)) {
+            return
+        }
+        val submitted = System.nanoTime()
+        executor.execute {
+            queued.remove(booster.id)
+            if (System.nanoTime() - submitted > deadline.toNanos()) {
+                logger.fine { "Dropped speculative fetch of booster '${booster.id}'" }
+            } else {
+                try {
+                    val tasks = ArrayList<Runnable>()
+                    deferred.set(tasks)
+                    val content = try {
+                        booster.fetchContent()
+                    } finally {
+                        deferred.remove()
+                    }
+                    // The booster isn't locked anymore while the tasks run
+                    tasks.forEach { it.run() }
+                    content.get()
+                } catch (e: InterruptedException) {
+                    Thread.currentThread().interrupt()
+                } catch (e: Exception) {
+                    logger.log(Level.FINE, "Speculative fetch of booster '${booster.id}' failed", e)
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an executor that runs the tasks that are submitted while a speculative
+     * fetch is being started on the low priority thread, after the fetch was started,
+     * and that hands all other tasks to the given executor
+     */
+    fun executor(fallback: Executor) = Executor { task ->
+        val tasks = deferred.get()
+        if (tasks != null) {
+            tasks.add(task)
+        } else {
+            fallback.execute(task)
+        }
+    }
+
+    companion object {
+        private val threadCount = AtomicInteger()
+
+        private val logger = Logger.getLogger(SpeculativeFetcher::class.java.name)
+    }
+}
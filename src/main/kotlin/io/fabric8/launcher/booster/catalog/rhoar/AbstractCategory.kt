@@ -7,6 +7,8 @@
 
 package io.fabric8.launcher.booster.catalog.rhoar
 
+import io.fabric8.launcher.booster.catalog.Attribute
+
 /**
  * This class is the base class for the types that we use to
  * divide the boosters into the categories: Missions, Runtimes
@@ -24,8 +26,7 @@ abstract class AbstractCategory (
     val key: String
         get() = id
 
-    val isSuggested: Boolean
-        get() = metadata.getOrDefault(KEY_SUGGESTED, false) as Boolean
+    val isSuggested: Boolean = SUGGESTED.read(metadata, this) ?: false
 
     override fun compareTo(other: AbstractCategory) = name.compareTo(other.name)
 
@@ -53,5 +54,7 @@ abstract class AbstractCategory (
 
     companion object {
         const val KEY_SUGGESTED = "suggested"
+
+        private val SUGGESTED = Attribute.boolean(KEY_SUGGESTED)
     }
 }
\ No newline at end of file
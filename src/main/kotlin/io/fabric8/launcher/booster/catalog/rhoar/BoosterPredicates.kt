@@ -26,9 +26,7 @@ class BoosterPredicates private constructor() {
          * @return a [Predicate] testing against the given [Runtime]
          */
         @JvmStatic
-        fun withRuntime(runtime: Runtime?) = Predicate<RhoarBooster> { b: RhoarBooster ->
-            runtime == null || runtime == b.runtime
-        }
+        fun withRuntime(runtime: Runtime?): Predicate<RhoarBooster> = CategoryFilter(runtime = runtime)
 
         /**
          * Returns a [Predicate] for a [RhoarBooster] testing if the provided [Pattern]
@@ -52,9 +50,7 @@ class BoosterPredicates private constructor() {
          * @return a [Predicate] testing against the given [Mission]
          */
         @JvmStatic
-        fun withMission(mission: Mission?) = Predicate<RhoarBooster> { b: RhoarBooster ->
-            mission == null || mission == b.mission
-        }
+        fun withMission(mission: Mission?): Predicate<RhoarBooster> = CategoryFilter(mission = mission)
 
         /**
          * Returns a [Predicate] for a [RhoarBooster] testing if its [Version]
@@ -65,9 +61,7 @@ class BoosterPredicates private constructor() {
          * @return a [Predicate] testing against the given [Version]
          */
         @JvmStatic
-        fun withVersion(version: Version?) = Predicate<RhoarBooster> { b: RhoarBooster ->
-            version == null || version == b.version
-        }
+        fun withVersion(version: Version?): Predicate<RhoarBooster> = CategoryFilter(version = version)
 
         /**
          * Returns a [Predicate] for a [RhoarBooster] testing if its [Pattern]
@@ -92,7 +86,7 @@ class BoosterPredicates private constructor() {
          * @see RhoarBooster.checkCategory
          */
         @JvmStatic
-        fun withRunsOn(clusterType: String?) = Predicate<RhoarBooster> { b: RhoarBooster -> b.runsOn(clusterType) }
+        fun withRunsOn(clusterType: String?): Predicate<RhoarBooster> = CategoryFilter(runsOn = clusterType)
 
         /**
          * Returns a [Predicate] for a [Booster] testing if against a script expression that must be evaluated
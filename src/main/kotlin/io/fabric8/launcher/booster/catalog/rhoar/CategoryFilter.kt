@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog.rhoar
+
+import java.util.function.Predicate
+
+/**
+ * A [Predicate] that selects [RhoarBooster]s by their categories and the cluster
+ * type they run on, a `null` value matches any booster. Because the catalog knows
+ * what these filters test it can answer them from the categories it has already
+ * worked out instead of going through all the boosters.
+ * Combining two filters with [and] results in a single filter where possible.
+ *
+ * @see BoosterPredicates
+ */
+class CategoryFilter(
+        val mission: Mission? = null,
+        val runtime: Runtime? = null,
+        val version: Version? = null,
+        val runsOn: String? = null) : Predicate<RhoarBooster> {
+
+    override fun test(b: RhoarBooster) =
+            (mission == null || mission == b.mission) &&
+                    (runtime == null || runtime == b.runtime) &&
+                    (version == null || version == b.version) &&
+                    b.runsOn(runsOn)
+
+    override fun and(other: Predicate<in RhoarBooster>): Predicate<RhoarBooster> {
+        if (other is CategoryFilter) {
+            val m = merge(mission, other.mission)
+            val r = merge(runtime, other.runtime)
+            val v = merge(version, other.version)
+            val ro = merge(runsOn?.toLowerCase().takeUnless { it.isNullOrEmpty() },
+                    other.runsOn?.toLowerCase().takeUnless { it.isNullOrEmpty() })
+            if (m != CONFLICT && r != CONFLICT && v != CONFLICT && ro != CONFLICT) {
+                return CategoryFilter(m as Mission?, r as Runtime?, v as Version?, ro as String?)
+            }
+        }
+        return super.and(other)
+    }
+
+    override fun toString() = "CategoryFilter [mission=$mission, runtime=$runtime, version=$version, runsOn=$runsOn]"
+
+    companion object {
+        internal val ANY = CategoryFilter()
+
+        private val CONFLICT = Any()
+
+        private fun merge(a: Any?, b: Any?) = when {
+            a == null -> b
+            b == null || a == b -> a
+            else -> CONFLICT
+        }
+    }
+}
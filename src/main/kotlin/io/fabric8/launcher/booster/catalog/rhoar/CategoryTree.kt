@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog.rhoar
+
+import java.util.Collections
+import java.util.SortedSet
+import java.util.TreeMap
+import java.util.TreeSet
+
+/**
+ * The missions, runtimes and versions of a fixed list of boosters, worked out in
+ * advance for every combination of mission, runtime and cluster type that can be
+ * asked for. Looking up the categories for a [CategoryFilter] doesn't go through
+ * the boosters, and the sets that are returned are shared and can't be modified.
+ */
+internal class CategoryTree(boosters: List<RhoarBooster>) {
+
+    class Categories(missions: SortedSet<Mission>, runtimes: SortedSet<Runtime>, versions: SortedSet<Version>) {
+        val missions: SortedSet<Mission> = Collections.unmodifiableSortedSet(missions)
+        val runtimes: SortedSet<Runtime> = Collections.unmodifiableSortedSet(runtimes)
+        val versions: SortedSet<Version> = Collections.unmodifiableSortedSet(versions)
+    }
+
+    private class Branch(val all: Categories, val byRuntime: Map<Runtime, Categories>)
+
+    /**
+     * The categories of the boosters that run on a particular cluster type
+     */
+    private class Node(boosters: List<RhoarBooster>) {
+        val all = categories(boosters)
+        val byMission: Map<Mission, Branch> = boosters.filter { it.mission != null }
+                .groupBy { it.mission!! }
+                .mapValues { (_, bs) -> Branch(categories(bs), byRuntime(bs)) }
+        val byRuntime = byRuntime(boosters)
+
+        fun get(mission: Mission?, runtime: Runtime?): Categories =
+                when {
+                    mission == null && runtime == null -> all
+                    mission == null -> byRuntime[runtime]
+                    runtime == null -> byMission[mission]?.all
+                    else -> byMission[mission]?.byRuntime?.get(runtime)
+                } ?: EMPTY
+
+        private fun byRuntime(bs: List<RhoarBooster>): Map<Runtime, Categories> =
+                bs.filter { it.runtime != null }
+                        .groupBy { it.runtime!! }
+                        .mapValues { (_, rbs) -> categories(rbs) }
+    }
+
+    private val anywhere = Node(boosters)
+
+    private val clusterTypes = TreeMap<String, Node>(String.CASE_INSENSITIVE_ORDER)
+
+    // The boosters for any cluster type that none of the boosters mentions
+    private val elsewhere = Node(boosters.filter { it.runsOn(UNMENTIONED) })
+
+    init {
+        boosters.flatMap { RhoarBooster.toList(it.getMetadata<Any>("runsOn")) }
+                .map { it.removePrefix("!") }
+                .filter { it.isNotEmpty() && it != "*" && !it.equals("all", true) && !it.equals("none", true) }
+                .forEach { type -> clusterTypes.computeIfAbsent(type) { Node(boosters.filter { it.runsOn(type) }) } }
+    }
+
+    /**
+     * Returns the categories of the boosters that pass the filter, or `null` when
+     * the filter can't be answered from the tree
+     */
+    fun get(filter: CategoryFilter): Categories? {
+        if (filter.version != null) {
+            return null
+        }
+        val runsOn = filter.runsOn
+        val node = if (runsOn.isNullOrEmpty()) anywhere else clusterTypes[runsOn] ?: elsewhere
+        return node.get(filter.mission, filter.runtime)
+    }
+
+    companion object {
+        private const val UNMENTIONED = "\u0000"
+
+        private val EMPTY = Categories(TreeSet(), TreeSet(), TreeSet())
+
+        private fun categories(bs: List<RhoarBooster>) = Categories(
+                bs.mapNotNullTo(TreeSet()) { it.mission },
+                bs.mapNotNullTo(TreeSet()) { it.runtime },
+                bs.mapNotNullTo(TreeSet()) { it.version })
+    }
+}
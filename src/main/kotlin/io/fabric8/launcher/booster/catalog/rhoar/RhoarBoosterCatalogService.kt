@@ -1,13 +1,19 @@
 package io.fabric8.launcher.booster.catalog.rhoar
 
+import io.fabric8.launcher.booster.CopyStrategy
 import io.fabric8.launcher.booster.catalog.AbstractBoosterCatalogService
 import io.fabric8.launcher.booster.catalog.Booster
 import io.fabric8.launcher.booster.catalog.BoosterFetcher
+import io.fabric8.launcher.booster.catalog.CatalogSnapshot
+import io.fabric8.launcher.booster.catalog.Delta
+import io.fabric8.launcher.booster.catalog.Page
+import io.fabric8.launcher.booster.catalog.FetchRetryPolicy
 import io.fabric8.launcher.booster.catalog.spi.BoosterCatalogProvider
 import io.fabric8.launcher.booster.catalog.spi.BoosterCatalogSourceProvider
 import io.fabric8.launcher.booster.catalog.spi.BoosterMetadataProvider
 import java.io.IOException
 import java.nio.file.Path
+import java.time.Duration
 import java.util.*
 import java.util.concurrent.ExecutorService
 import java.util.function.Predicate
@@ -21,30 +27,193 @@ import kotlin.collections.HashMap
 class RhoarBoosterCatalogService protected constructor(config: Builder) : AbstractBoosterCatalogService<RhoarBooster>(config), RhoarBoosterCatalog {
     var metadataProvider: BoosterMetadataProvider? = null
 
+    private val searchMetadata = config.searchMetadata
+
     init {
         this.metadataProvider = config.metadataProvider ?: config.discoverMetadataProvider()
     }
 
     override fun newBooster(data: Map<String, Any?>, boosterFetcher: BoosterFetcher) = RhoarBooster(data, boosterFetcher)
 
-    override fun getMissions() = toMissions(prefilteredBoosters)
+    override fun getMissions(): Set<Mission> = categories(null)?.missions ?: toMissions(prefilteredBoosters)
 
-    override fun getMissions(filter: Predicate<RhoarBooster>) = toMissions(prefilteredBoosters.filter(filter))
+    override fun getMissions(filter: Predicate<RhoarBooster>): Set<Mission> =
+            categories(filter)?.missions ?: toMissions(prefilteredBoosters(filter))
 
-    override fun getRuntimes() = toRuntimes(prefilteredBoosters)
+    override fun getRuntimes(): Set<Runtime> = categories(null)?.runtimes ?: toRuntimes(prefilteredBoosters)
 
-    override fun getRuntimes(filter: Predicate<RhoarBooster>) = toRuntimes(prefilteredBoosters.filter(filter))
+    override fun getRuntimes(filter: Predicate<RhoarBooster>): Set<Runtime> =
+            categories(filter)?.runtimes ?: toRuntimes(prefilteredBoosters(filter))
 
-    override fun getVersions(filter: Predicate<RhoarBooster>) = toVersions(prefilteredBoosters.filter(filter))
+    override fun getVersions(filter: Predicate<RhoarBooster>): Set<Version> =
+            categories(filter)?.versions ?: toVersions(prefilteredBoosters(filter))
 
-    override fun getVersions(mission: Mission, runtime: Runtime) = getVersions(BoosterPredicates.withMission(mission).and(BoosterPredicates.withRuntime(runtime)))
+    override fun getVersions(mission: Mission, runtime: Runtime): Set<Version> {
+        val filter = BoosterPredicates.withMission(mission).and(BoosterPredicates.withRuntime(runtime))
+        // Once mission and runtime are known there are usually only a few candidates left
+        speculate(filter)
+        return getVersions(filter)
+    }
 
-    override fun getBooster(mission: Mission, runtime: Runtime, version: Version?) =
-            prefilteredBoosters
+    override fun getBooster(mission: Mission, runtime: Runtime, version: Version?): Optional<RhoarBooster> {
+        val booster = prefilteredBoosters
                 .filter(BoosterPredicates.withMission(mission))
                 .filter(BoosterPredicates.withRuntime(runtime))
                 .filter(BoosterPredicates.withVersion(version))
                 .findAny()
+        booster.ifPresent { speculate(it) }
+        return booster
+    }
+
+    /**
+     * Returns the boosters that pass the filter, or all of them when there's no filter,
+     * in the given order. The boosters are taken lazily from the current snapshot,
+     * where they've been sorted once for every [SortKey].
+     */
+    @JvmOverloads
+    fun stream(sortKey: SortKey, filter: Predicate<RhoarBooster>? = null): Stream<RhoarBooster> {
+        val sorted = sorted(currentSnapshot(), sortKey)
+        return if (filter == null) sorted.stream() else sorted.stream().filter(filter)
+    }
+
+    /**
+     * Returns the page of at most `limit` boosters, in the given order, that comes after
+     * skipping `offset` boosters. Without a filter this only takes the boosters of the page,
+     * with a filter the boosters before the page have to be tested as well.
+     */
+    @JvmOverloads
+    fun query(sortKey: SortKey, offset: Int, limit: Int, filter: Predicate<RhoarBooster>? = null): Page<RhoarBooster> {
+        require(offset >= 0 && limit >= 0) { "Offset and limit can't be negative" }
+        val snapshot = currentSnapshot()
+        val sorted = sorted(snapshot, sortKey)
+        if (filter == null) {
+            val end = Math.min(offset.toLong() + limit, sorted.size.toLong()).toInt()
+            val start = Math.min(offset, end)
+            return page(snapshot, sortKey, sorted.subList(start, end), end)
+        }
+        var skipped = 0
+        return scan(snapshot, sortKey, sorted, 0, limit) { b -> filter.test(b) && skipped++ >= offset }
+    }
+
+    /**
+     * Returns the page of at most `limit` boosters, in the given order, that follows the
+     * page the cursor was returned with, or the first page when the cursor is `null`.
+     * This only takes the boosters of the page, and those that don't pass the filter in
+     * between. A cursor stays valid after re-indexing as long as its snapshot is still
+     * in the history (see [AbstractBuilder.snapshotHistory]), the page then continues
+     * after the last booster that was returned. The last page can be empty.
+     *
+     * @throws IllegalArgumentException when the cursor isn't valid (anymore)
+     */
+    @JvmOverloads
+    fun query(sortKey: SortKey, cursor: String?, limit: Int, filter: Predicate<RhoarBooster>? = null): Page<RhoarBooster> {
+        require(limit >= 0) { "Limit can't be negative" }
+        val snapshot = currentSnapshot()
+        val sorted = sorted(snapshot, sortKey)
+        val start = if (cursor != null) position(snapshot, sortKey, sorted, cursor) else 0
+        return scan(snapshot, sortKey, sorted, start, limit) { filter == null || filter.test(it) }
+    }
+
+    /**
+     * Returns the boosters whose name, description, mission, runtime, version or searchable
+     * metadata (see [Builder.searchMetadata]) contain all the words in the query, where a
+     * word in the query also matches longer words starting with it. The best matches come
+     * first, equally good matches are ordered by name. A query without any words returns
+     * all boosters ordered by name. Only the boosters passing the filter, if any, are returned.
+     * The search uses an index that's built once per snapshot, while indexing.
+     */
+    @JvmOverloads
+    fun search(query: String, filter: Predicate<RhoarBooster>? = null): List<RhoarBooster> {
+        val matches = searchIndex(currentSnapshot()).search(query)
+        return if (filter == null) matches else filterBoosters(matches, filter).collect(Collectors.toList())
+    }
+
+    override fun prepareSnapshot(snapshot: CatalogSnapshot<RhoarBooster>) {
+        searchIndex(snapshot)
+    }
+
+    private fun searchIndex(snapshot: CatalogSnapshot<RhoarBooster>) =
+            snapshot.derive(SearchIndex::class.java) { SearchIndex(sorted(it, SortKey.NAME), searchMetadata) }
+
+    // Before the first indexing run has finished we make do with the boosters found so far
+    private fun currentSnapshot() = snapshot
+            ?: CatalogSnapshot(0, prefilteredBoosters.sorted(compareBy { it.id }).collect(Collectors.toList()))
+
+    private fun sorted(snapshot: CatalogSnapshot<RhoarBooster>, sortKey: SortKey) =
+            snapshot.derive(sortKey) { s -> Collections.unmodifiableList(s.boosters.sortedWith(sortKey.comparator)) }
+
+    private fun scan(snapshot: CatalogSnapshot<RhoarBooster>, sortKey: SortKey, sorted: List<RhoarBooster>,
+                     start: Int, limit: Int, accept: (RhoarBooster) -> Boolean): Page<RhoarBooster> {
+        val items = ArrayList<RhoarBooster>(Math.min(limit, sorted.size))
+        var i = start
+        while (i < sorted.size && items.size < limit) {
+            val b = sorted[i++]
+            if (accept(b)) {
+                items.add(b)
+            }
+        }
+        return page(snapshot, sortKey, items, i)
+    }
+
+    private fun page(snapshot: CatalogSnapshot<RhoarBooster>, sortKey: SortKey, items: List<RhoarBooster>, next: Int): Page<RhoarBooster> {
+        val sorted = sorted(snapshot, sortKey)
+        val cursor = if (next < sorted.size && next > 0) {
+            val raw = "${snapshot.version}:$sortKey:$next:${sorted[next - 1].id}"
+            Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toByteArray(Charsets.UTF_8))
+        } else {
+            null
+        }
+        return Page(items, cursor, snapshot.version)
+    }
+
+    private fun position(snapshot: CatalogSnapshot<RhoarBooster>, sortKey: SortKey, sorted: List<RhoarBooster>, cursor: String): Int {
+        val parts = try {
+            String(Base64.getUrlDecoder().decode(cursor), Charsets.UTF_8).split(':', limit = 4)
+        } catch (e: IllegalArgumentException) {
+            emptyList<String>()
+        }
+        require(parts.size == 4 && parts[1] == sortKey.name) { "Invalid cursor '$cursor'" }
+        val version = parts[0].toLong()
+        if (version == snapshot.version) {
+            return parts[2].toInt()
+        }
+        // The catalog changed, we continue after where the last booster would be now
+        val from = snapshotsSince(version)?.first
+        require(version != 0L && from != null) { "Cursor '$cursor' has expired" }
+        val last = from.boosters.find { it.id == parts[3] } ?: throw IllegalArgumentException("Invalid cursor '$cursor'")
+        val index = Collections.binarySearch(sorted, last, sortKey.comparator)
+        return if (index >= 0) index + 1 else -(index + 1)
+    }
+
+    override fun changesSince(version: Long): RhoarCatalogChanges {
+        val (from, to) = snapshotsSince(version)
+                ?: return RhoarCatalogChanges(version, snapshot?.version ?: 0, true, Delta.empty(), Delta.empty(), Delta.empty(), Delta.empty())
+        return to.derive(RhoarCatalogChanges::class.java to from.version) {
+            RhoarCatalogChanges(from.version, to.version, false, boosterChanges(from, to),
+                    categoryChanges(from, to) { it.mission },
+                    categoryChanges(from, to) { it.runtime },
+                    categoryChanges(from, to) { it.version })
+        }
+    }
+
+    private fun <T : AbstractCategory> categoryChanges(from: CatalogSnapshot<RhoarBooster>, to: CatalogSnapshot<RhoarBooster>,
+                                                       category: (RhoarBooster) -> T?): Delta<T> =
+            Delta.between(from.boosters.mapNotNull(category).distinct(), to.boosters.mapNotNull(category).distinct(), { it.id }) { a, b ->
+                a.name == b.name && a.description == b.description && a.metadata == b.metadata
+            }
+
+    /**
+     * Looks up the categories in the tree of the current snapshot, returns `null` when
+     * there's no snapshot yet or when the filter isn't a [CategoryFilter] the tree can answer
+     */
+    private fun categories(filter: Predicate<RhoarBooster>?): CategoryTree.Categories? {
+        val categoryFilter = when (filter) {
+            null -> CategoryFilter.ANY
+            is CategoryFilter -> filter
+            else -> return null
+        }
+        return snapshot?.derive(CategoryTree::class.java) { CategoryTree(it.boosters) }?.get(categoryFilter)
+    }
 
     private fun toRuntimes(bs: Stream<RhoarBooster>) =
             bs
@@ -166,11 +335,22 @@ class RhoarBoosterCatalogService protected constructor(config: Builder) : Abstra
     class Builder : AbstractBoosterCatalogService.AbstractBuilder<RhoarBooster, RhoarBoosterCatalogService>() {
         var metadataProvider: BoosterMetadataProvider? = null
 
+        var searchMetadata = emptyList<String>()
+
         open fun metadataProvider(metadataProvider: BoosterMetadataProvider): Builder {
             this.metadataProvider = metadataProvider
             return this
         }
 
+        /**
+         * Sets the keys of the metadata whose values should be searchable, see [search].
+         * Keys can be paths with "/" separating the keys of nested items.
+         */
+        fun searchMetadata(keys: List<String>): Builder {
+            this.searchMetadata = keys
+            return this
+        }
+
         override fun catalogRef(catalogRef: String) = super.catalogRef(catalogRef) as Builder
         override fun catalogRepository(catalogRepositoryURI: String) = super.catalogRepository(catalogRepositoryURI) as Builder
         override fun catalogProvider(catalogProvider: BoosterCatalogProvider) = super.catalogProvider(catalogProvider) as Builder
@@ -179,6 +359,19 @@ class RhoarBoosterCatalogService protected constructor(config: Builder) : Abstra
         override fun listener(listener: (booster: Booster) -> Any) = super.listener(listener) as Builder
         override fun transformer(transformer: (data: Map<String, Any?>) -> Map<String, Any?>) = super.transformer(transformer) as Builder
         override fun executor(executor: ExecutorService) = super.executor(executor) as Builder
+        override fun fetchRetryPolicy(fetchRetryPolicy: FetchRetryPolicy) = super.fetchRetryPolicy(fetchRetryPolicy) as Builder
+        override fun staleWhileRevalidate(maxStaleness: Duration) = super.staleWhileRevalidate(maxStaleness) as Builder
+        override fun prefetchLimit(prefetchLimit: Int) = super.prefetchLimit(prefetchLimit) as Builder
+        override fun speculativeFetch(deadline: Duration, maxCandidates: Int) = super.speculativeFetch(deadline, maxCandidates) as Builder
+        override fun copyStrategy(strategy: CopyStrategy) = super.copyStrategy(strategy) as Builder
+        override fun copyParallelism(parallelism: Int) = super.copyParallelism(parallelism) as Builder
+        override fun zipCompressionLevel(level: Int) = super.zipCompressionLevel(level) as Builder
+        override fun zipParallelism(parallelism: Int) = super.zipParallelism(parallelism) as Builder
+        override fun deduplicateContent(enabled: Boolean) = super.deduplicateContent(enabled) as Builder
+        override fun memoryTier(budget: Long) = super.memoryTier(budget) as Builder
+        override fun contentJanitor(threads: Int, deletionsPerSecond: Int) = super.contentJanitor(threads, deletionsPerSecond) as Builder
+        override fun snapshotHistory(size: Int) = super.snapshotHistory(size) as Builder
+        override fun parallelQueryThreshold(threshold: Duration) = super.parallelQueryThreshold(threshold) as Builder
         override fun rootDir(root: Path) = super.rootDir(root) as Builder
         override fun build() = RhoarBoosterCatalogService(this)
 
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog.rhoar
+
+import io.fabric8.launcher.booster.catalog.CatalogChanges
+import io.fabric8.launcher.booster.catalog.Delta
+
+/**
+ * The changes to the boosters of a [RhoarBoosterCatalogService] and to the missions,
+ * runtimes and versions they're divided into. A category is added when the first
+ * booster using it appears and removed when the last one goes. Categories count as
+ * modified when their name, description or metadata changed.
+ */
+class RhoarCatalogChanges internal constructor(
+        fromVersion: Long,
+        toVersion: Long,
+        isFullResyncRequired: Boolean,
+        boosters: Delta<RhoarBooster>,
+        val missions: Delta<Mission>,
+        val runtimes: Delta<Runtime>,
+        val versions: Delta<Version>)
+    : CatalogChanges<RhoarBooster>(fromVersion, toVersion, isFullResyncRequired, boosters) {
+
+    override fun toString() =
+            if (isFullResyncRequired) super.toString()
+            else super.toString() + ", missions $missions, runtimes $runtimes, versions $versions"
+}
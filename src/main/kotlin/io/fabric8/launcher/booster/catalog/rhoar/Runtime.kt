@@ -7,8 +7,7 @@
 
 package io.fabric8.launcher.booster.catalog.rhoar
 
-import java.util.Collections
-import java.util.Objects
+import io.fabric8.launcher.booster.catalog.Attribute
 
 /**
  * This type is used to group boosters into "Runtimes",
@@ -23,11 +22,12 @@ class Runtime @JvmOverloads constructor(id: String,
                                         val versions: Map<String, Version> = emptyMap())
     : AbstractCategory(id, name, description, metadata) {
 
-    val pipelinePlatform: String
-        get() = Objects.toString(metadata.getOrDefault(KEY_PIPELINE_PLATFORM, DEFAULT_PIPELINE_PLATFORM))
+    val pipelinePlatform: String = PIPELINE_PLATFORM.read(metadata, this) ?: DEFAULT_PIPELINE_PLATFORM
 
     companion object {
         const val KEY_PIPELINE_PLATFORM = "pipelinePlatform"
         const val DEFAULT_PIPELINE_PLATFORM = "maven"
+
+        private val PIPELINE_PLATFORM = Attribute.string(KEY_PIPELINE_PLATFORM)
     }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog.rhoar
+
+import java.util.Arrays
+
+/**
+ * An inverted index of the words in the names, descriptions, categories and
+ * selected metadata of a fixed list of boosters. A booster matches a query when
+ * every word in the query is a word, or the start of a word, of the booster.
+ * Matches are ranked by where the words were found, words in the name counting
+ * more than words in the description, and whole words more than prefixes.
+ */
+internal class SearchIndex(private val boosters: List<RhoarBooster>, metadataKeys: List<String>) {
+
+    // The distinct words in alphabetical order, with for each word the boosters it was
+    // found in, in ascending order, and the combined weight of the fields it was found in
+    private val terms: Array<String>
+    private val postings: Array<IntArray>
+    private val weights: Array<FloatArray>
+
+    init {
+        val index = HashMap<String, LinkedHashMap<Int, Float>>()
+        boosters.forEachIndexed { i, b ->
+            // A word counts once per field, and once more for every other field it's found in
+            fun add(weight: Float, texts: List<String?>) {
+                texts.flatMap { tokenize(it) }.distinct().forEach { t ->
+                    index.getOrPut(t) { LinkedHashMap() }.merge(i, weight, Float::plus)
+                }
+            }
+            add(NAME_WEIGHT, listOf(b.name))
+            add(CATEGORY_WEIGHT, listOf(b.mission?.name, b.mission?.id))
+            add(CATEGORY_WEIGHT, listOf(b.runtime?.name, b.runtime?.id))
+            add(VERSION_WEIGHT, listOf(b.version?.name))
+            add(DESCRIPTION_WEIGHT, listOf(b.description))
+            add(METADATA_WEIGHT, metadataKeys.flatMap { RhoarBooster.toList(b.getMetadata<Any>(it)) })
+        }
+        terms = index.keys.toTypedArray().also { Arrays.sort(it) }
+        postings = Array(terms.size) { index.getValue(terms[it]).keys.toIntArray() }
+        weights = Array(terms.size) { index.getValue(terms[it]).values.toFloatArray() }
+    }
+
+    /**
+     * The number of distinct words in the index
+     */
+    val size get() = terms.size
+
+    /**
+     * Returns the boosters matching the query, best matches first, and those with equal
+     * scores in the order of the list the index was made for. A query without words
+     * matches all boosters.
+     */
+    fun search(query: String): List<RhoarBooster> {
+        val words = tokenize(query).distinct()
+        if (words.isEmpty()) {
+            return boosters
+        }
+        // Start with the rarest word, the others can then only narrow it down
+        val matches = words.map { score(it) }.sortedBy { it.size }
+        val scores = matches[0]
+        for (other in matches.subList(1, matches.size)) {
+            val it = scores.entries.iterator()
+            while (it.hasNext()) {
+                val e = it.next()
+                val s = other[e.key]
+                if (s == null) it.remove() else e.setValue(e.value + s)
+            }
+        }
+        return scores.entries
+                .sortedWith(compareByDescending<Map.Entry<Int, Float>> { it.value }.thenBy { it.key })
+                .map { boosters[it.key] }
+    }
+
+    // The best score per booster for the terms starting with the word
+    private fun score(word: String): HashMap<Int, Float> {
+        val result = HashMap<Int, Float>()
+        var t = Arrays.binarySearch(terms, word).let { if (it >= 0) it else -(it + 1) }
+        while (t < terms.size && terms[t].startsWith(word)) {
+            val factor = if (terms[t].length == word.length) 1f else PREFIX_FACTOR
+            val docs = postings[t]
+            val ws = weights[t]
+            for (j in docs.indices) {
+                val s = ws[j] * factor
+                result.merge(docs[j], s) { a, b -> Math.max(a, b) }
+            }
+            t++
+        }
+        return result
+    }
+
+    companion object {
+        private const val NAME_WEIGHT = 4f
+        private const val CATEGORY_WEIGHT = 3f
+        private const val VERSION_WEIGHT = 2f
+        private const val METADATA_WEIGHT = 1.5f
+        private const val DESCRIPTION_WEIGHT = 1f
+        private const val PREFIX_FACTOR = 0.5f
+
+        /**
+         * Splits the text into lower case words made up of letters and digits
+         */
+        fun tokenize(text: String?): List<String> {
+            if (text == null) {
+                return emptyList()
+            }
+            val words = ArrayList<String>()
+            var start = -1
+            for (i in 0..text.length) {
+                val letter = i < text.length && Character.isLetterOrDigit(text[i])
+                if (letter && start < 0) {
+                    start = i
+                } else if (!letter && start >= 0) {
+                    words.add(text.substring(start, i).toLowerCase())
+                    start = -1
+                }
+            }
+            return words
+        }
+    }
+}
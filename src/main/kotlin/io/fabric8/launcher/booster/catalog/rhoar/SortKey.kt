@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog.rhoar
+
+/**
+ * The orders in which [RhoarBoosterCatalogService.query] can return boosters.
+ * Categories are ordered by name like they are everywhere else, boosters without
+ * the category come last. Ties are broken by the other keys and finally by id,
+ * so every key defines a single order.
+ */
+enum class SortKey {
+    NAME, MISSION, RUNTIME, VERSION;
+
+    internal val comparator: Comparator<RhoarBooster> by lazy {
+        val byName = compareBy<RhoarBooster, String>(String.CASE_INSENSITIVE_ORDER) { it.name }
+        val categories = nullsLast(naturalOrder<AbstractCategory>())
+        val byMission = compareBy<RhoarBooster, AbstractCategory?>(categories) { it.mission }
+        val byRuntime = compareBy<RhoarBooster, AbstractCategory?>(categories) { it.runtime }
+        val byVersion = compareBy<RhoarBooster, AbstractCategory?>(categories) { it.version }
+        val keys = when (this) {
+            NAME -> listOf(byName, byMission, byRuntime, byVersion)
+            MISSION -> listOf(byMission, byRuntime, byVersion, byName)
+            RUNTIME -> listOf(byRuntime, byVersion, byMission, byName)
+            VERSION -> listOf(byVersion, byRuntime, byMission, byName)
+        }
+        keys.reduce { a, b -> a.then(b) }.thenBy { it.id }
+    }
+}
@@ -13,23 +13,18 @@ import javax.script.SimpleScriptContext
 
 
 /**
- * This predicate takes a JavaScript expression and evaluates to true or false, using "booster" as the argument
+ * This predicate takes a JavaScript expression and evaluates to true or false, using "booster" as the argument.
+ * Script engines aren't safe to use from multiple threads, so every thread compiles the script with its own engine.
  *
  * @author [George Gastaldi](mailto:ggastald@redhat.com)
  */
 class BoosterScriptingPredicate(evalScript: String) : Predicate<Booster> {
 
-    private val script: CompiledScript
+    private val scripts = ThreadLocal.withInitial { compile(evalScript) }
 
     init {
-        val manager = ScriptEngineManager()
-        val engine = manager.getEngineByName("js")
-        try {
-            this.script = (engine as Compilable).compile(evalScript)
-        } catch (e: ScriptException) {
-            throw IllegalArgumentException("script is invalid", e)
-        }
-
+        // Fails early when the script is invalid
+        scripts.get()
     }
 
     override fun test(rhoarBooster: Booster): Boolean {
@@ -37,7 +32,7 @@ class BoosterScriptingPredicate(evalScript: String) : Predicate<Booster> {
         context.setAttribute("booster", rhoarBooster, ScriptContext.ENGINE_SCOPE)
         var result: Any = java.lang.Boolean.FALSE
         try {
-            result = script.eval(context)
+            result = scripts.get().eval(context)
         } catch (e: ScriptException) {
             log.log(Level.WARNING, "Error while evaluating script", e)
         }
@@ -50,5 +45,15 @@ class BoosterScriptingPredicate(evalScript: String) : Predicate<Booster> {
 
     companion object {
         private val log = Logger.getLogger(BoosterScriptingPredicate::class.java.name)
+
+        private fun compile(evalScript: String): CompiledScript {
+            val manager = ScriptEngineManager()
+            val engine = manager.getEngineByName("js")
+            try {
+                return (engine as Compilable).compile(evalScript)
+            } catch (e: ScriptException) {
+                throw IllegalArgumentException("script is invalid", e)
+            }
+        }
     }
 }
@@ -29,11 +29,17 @@ open class NativeGitCatalogProvider(private val catalogRepositoryURI: String, pr
         readMetadata(catalogPath.resolve("metadata.json"))
     }
 
+    // The catalog gets its own folder so the target directory can be reused
+    // after a restart, keeping the cloned boosters and other cached data
     private val catalogPath: Path by lazy {
-        cloneRepository(catalogRepositoryURI, catalogRef, targetDir)
+        val path = targetDir.resolve(CATALOG_DIR)
+        io.fabric8.launcher.booster.Files.deleteRecursively(path)
+        cloneRepository(catalogRepositoryURI, catalogRef, path)
     }
 
     companion object {
+        const val CATALOG_DIR = ".catalog"
+
         private val logger = Logger.getLogger(NativeGitCatalogProvider::class.java.name)
     }
 
@@ -11,10 +11,20 @@ import java.nio.file.Path
 
 import io.fabric8.launcher.booster.catalog.Booster
 import io.fabric8.launcher.booster.catalog.utils.cloneRepository
+import java.io.IOException
+import java.nio.charset.StandardCharsets
 import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
 
 /**
  * Default implementation for [BoosterCatalogSourceProvider]
+ *
+ * Each version (repository and ref) of a booster gets cloned into its own directory.
+ * Clones are made in a temporary directory that is atomically moved into place once
+ * the clone has finished, so a content directory is never seen in a half-finished state
+ * and it never changes once it's there. A version that was already cloned before will
+ * be reused instead of being cloned again.
  */
 open class NativeGitCatalogSourceProvider(private val rootDir: Path? = null) {
     private var tempDir: Path? = null
@@ -22,16 +32,30 @@ open class NativeGitCatalogSourceProvider(private val rootDir: Path? = null) {
     open val fetchSource: BoosterCatalogSourceProvider = { booster ->
         val gitRepo = booster.gitRepo
         val gitRef = booster.gitRef
-        val path = createContentPath(booster)
         assert(gitRepo != null)
         assert(gitRef != null)
-        cloneRepository(gitRepo!!, gitRef!!, path)
+        val path = contentPath(booster)
+        if (!Files.isDirectory(path)) {
+            val tmpPath = Files.createTempDirectory(path.parent, ".clone-")
+            try {
+                cloneRepository(gitRepo!!, gitRef!!, tmpPath)
+                Files.move(tmpPath, path, StandardCopyOption.ATOMIC_MOVE)
+            } catch (e: IOException) {
+                // Someone else might have been quicker, in that case we'll use their clone
+                if (!Files.isDirectory(path)) {
+                    throw e
+                }
+            } finally {
+                io.fabric8.launcher.booster.Files.deleteRecursively(tmpPath)
+            }
+        }
+        path
     }
 
-    private fun createContentPath(booster: Booster): Path {
-        val path = targetDir.resolve(booster.id)
-        Files.createDirectories(path)
-        return path
+    private fun contentPath(booster: Booster): Path {
+        val dir = targetDir.resolve(CLONED_BOOSTERS_DIR).resolve(booster.id)
+        Files.createDirectories(dir)
+        return dir.resolve(versionDirName(booster.gitRepo, booster.gitRef))
     }
 
     internal val targetDir: Path
@@ -45,4 +69,20 @@ open class NativeGitCatalogSourceProvider(private val rootDir: Path? = null) {
                 return path
             }
         }
+
+    companion object {
+        /**
+         * The folder inside the target directory where the boosters get cloned
+         */
+        const val CLONED_BOOSTERS_DIR = ".boosters"
+
+        // We use a readable version of the ref combined with a hash of the
+        // repository and ref to make sure different versions never collide
+        internal fun versionDirName(repo: String?, ref: String?): String {
+            val digest = MessageDigest.getInstance("SHA-1").digest("$repo#$ref".toByteArray(StandardCharsets.UTF_8))
+            val hash = digest.take(4).joinToString("") { String.format("%02x", it) }
+            val name = (ref ?: "").replace(Regex("[^A-Za-z0-9._-]"), "_").take(64)
+            return "$name-$hash"
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package io.fabric8.launcher.booster.catalog.utils
+
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
+
+/**
+ * Works like [CompletableFuture.supplyAsync] except that cancelling the returned
+ * [CompletableFuture] interrupts the thread that is running the supplier.
+ * This way blocking operations, like waiting for a process, can be aborted.
+ */
+fun <T> supplyInterruptibly(executor: Executor, supplier: () -> T): CompletableFuture<T> {
+    val result = CompletableFuture<T>()
+    val lock = Any()
+    var worker: Thread? = null
+    executor.execute {
+        synchronized(lock) {
+            if (result.isDone) {
+                return@execute
+            }
+            worker = Thread.currentThread()
+        }
+        try {
+            result.complete(supplier())
+        } catch (e: Throwable) {
+            result.completeExceptionally(e)
+        } finally {
+            synchronized(lock) {
+                worker = null
+            }
+            // Make sure a cancellation doesn't leave the (pooled) thread interrupted
+            if (result.isCancelled) {
+                Thread.interrupted()
+            }
+        }
+    }
+    result.whenComplete { _, ex ->
+        if (ex is CancellationException) {
+            synchronized(lock) {
+                worker?.interrupt()
+            }
+        }
+    }
+    return result
+}
@@ -1,37 +1,188 @@
 package io.fabric8.launcher.booster.catalog.utils
 
+import io.fabric8.launcher.booster.catalog.LauncherConfiguration
+import java.io.ByteArrayOutputStream
 import java.io.IOException
+import java.io.InputStream
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
 import java.nio.file.Path
+import java.time.Duration
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
 import java.util.logging.Level
 import java.util.logging.Logger
 import java.util.stream.Collectors
+import java.util.stream.Stream
 
 private val logger = Logger.getLogger("io.fabric8.launcher.booster.catalog.utils.git")
 
 @Throws(IOException::class)
-fun cloneRepository(repo: String, ref: String, targetPath: Path): Path {
-    val exitCode: Int
+@JvmOverloads
+fun cloneRepository(repo: String, ref: String, targetPath: Path, runner: GitProcessRunner = GitProcessRunner.default): Path {
+    // Only clean up after a failure when we're not the ones that put the files there
+    val cleanup = !Files.isDirectory(targetPath) || Files.list(targetPath).use { !it.findAny().isPresent }
     try {
-        val builder = ProcessBuilder()
-                .command("git", "clone", repo,
-                        "--branch", ref,
-                        "--recursive",
-                        "--depth=1",
-                        "--quiet",
-                        "-c", "advice.detachedHead=false",
-                        targetPath.toString())
-                .inheritIO()
-        logger.info { "Executing: " + builder.command().stream().collect(Collectors.joining(" ")) }
-        exitCode = builder.start().waitFor()
-        if (exitCode != 0) {
-            throw IllegalStateException("Process returned exit code: $exitCode")
-        }
-    } catch (e: InterruptedException) {
-        // Restore interrupted state
-        Thread.currentThread().interrupt()
-        logger.log(Level.WARNING, "Interrupted cloning process")
-        throw IOException("Interrupted", e)
+        val result = runner.run(listOf("clone", repo,
+                "--branch", ref,
+                "--recursive",
+                "--depth=1",
+                "--quiet",
+                "-c", "advice.detachedHead=false",
+                targetPath.toString()))
+        if (result.exitCode != 0) {
+            throw IllegalStateException("Process returned exit code: ${result.exitCode}\n${result.stderr}")
+        }
+    } catch (e: Exception) {
+        // Don't leave a half cloned repository behind, it would make the next attempt fail
+        if (cleanup) {
+            io.fabric8.launcher.booster.Files.deleteRecursively(targetPath)
+        }
+        throw e
     }
-
     return targetPath
 }
+
+/**
+ * The outcome of a finished `git` process
+ */
+class GitResult(val exitCode: Int, val stdout: String, val stderr: String)
+
+/**
+ * Runs `git` commands as child processes. There is a cap on the number of processes
+ * that can run at the same time and each of them gets killed when it runs longer than
+ * the given timeout. A process also gets killed, together with its children, when the
+ * thread waiting for it is interrupted, which is what happens when a content fetch
+ * gets cancelled.
+ * The output of the processes is captured in bounded buffers that only keep the tail
+ * of the output instead of being written to the console.
+ */
+class GitProcessRunner @JvmOverloads constructor(
+        maxConcurrentProcesses: Int = LauncherConfiguration.gitMaxConcurrentProcesses(),
+        val timeout: Duration = LauncherConfiguration.gitTimeout(),
+        private val outputLimit: Int = DEFAULT_OUTPUT_LIMIT,
+        private val executable: String = "git") {
+
+    private val permits = Semaphore(maxConcurrentProcesses, true)
+
+    /**
+     * Runs `git` with the given arguments and waits for it to finish
+     * @throws IOException if the process couldn't be started, timed out or was interrupted
+     */
+    @Throws(IOException::class)
+    @JvmOverloads
+    fun run(args: List<String>, timeout: Duration = this.timeout): GitResult {
+        val command = listOf(executable) + args
+        try {
+            permits.acquire()
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            throw IOException("Interrupted while waiting to run git", e)
+        }
+        try {
+            logger.info { "Executing: " + command.joinToString(" ") }
+            val process = ProcessBuilder(command).start()
+            process.outputStream.close()
+            val stdout = drain(process.inputStream)
+            val stderr = drain(process.errorStream)
+            try {
+                if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    destroyProcessTree(process)
+                    throw IOException("Process timed out after ${timeout.seconds}s: ${command.joinToString(" ")}\n${stderr.text()}")
+                }
+            } catch (e: InterruptedException) {
+                destroyProcessTree(process)
+                // Restore interrupted state
+                Thread.currentThread().interrupt()
+                logger.log(Level.WARNING, "Interrupted git process")
+                throw IOException("Interrupted", e)
+            }
+            // Child processes that outlive git could keep the streams open
+            stdout.join(DRAIN_TIMEOUT_MILLIS)
+            stderr.join(DRAIN_TIMEOUT_MILLIS)
+            return GitResult(process.exitValue(), stdout.text(), stderr.text())
+        } finally {
+            permits.release()
+        }
+    }
+
+    private fun drain(input: InputStream): OutputCollector {
+        val collector = OutputCollector(input, outputLimit)
+        collector.start()
+        return collector
+    }
+
+    /**
+     * Reads a process stream until its end, only keeping the last `limit` bytes
+     */
+    private class OutputCollector(private val input: InputStream, private val limit: Int) : Thread("git-output") {
+        private val buffer = ByteArray(limit)
+        private var length = 0
+        private var end = 0
+
+        init {
+            isDaemon = true
+        }
+
+        override fun run() {
+            val chunk = ByteArray(4096)
+            try {
+                input.use {
+                    while (true) {
+                        val n = it.read(chunk)
+                        if (n < 0) break
+                        append(chunk, n)
+                    }
+                }
+            } catch (ignored: IOException) {
+                // The stream gets closed when the process is destroyed
+            }
+        }
+
+        @Synchronized
+        private fun append(chunk: ByteArray, n: Int) {
+            for (i in 0 until n) {
+                buffer[end] = chunk[i]
+                end = (end + 1) % limit
+            }
+            length = Math.min(length + n, limit)
+        }
+
+        @Synchronized
+        fun text(): String {
+            val out = ByteArrayOutputStream(length)
+            val start = (end - length + limit) % limit
+            for (i in 0 until length) {
+                out.write(buffer[(start + i) % limit].toInt())
+            }
+            return String(out.toByteArray(), StandardCharsets.UTF_8)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_OUTPUT_LIMIT = 8 * 1024
+
+        private const val DRAIN_TIMEOUT_MILLIS = 1000L
+
+        /**
+         * The runner shared by all catalogs, making the limit on concurrent processes global
+         */
+        @JvmStatic
+        val default: GitProcessRunner by lazy { GitProcessRunner() }
+
+        /**
+         * Kills the process and, when running on a JVM that supports it (9+),
+         * all of its descendants. On older JVMs only the process itself gets killed.
+         */
+        internal fun destroyProcessTree(process: Process) {
+            try {
+                val processHandle = Class.forName("java.lang.ProcessHandle")
+                val destroy = processHandle.getMethod("destroyForcibly")
+                val descendants = Process::class.java.getMethod("descendants").invoke(process) as Stream<*>
+                descendants.collect(Collectors.toList()).forEach { destroy.invoke(it) }
+            } catch (ignored: ReflectiveOperationException) {
+            }
+            process.destroyForcibly()
+        }
+    }
+}
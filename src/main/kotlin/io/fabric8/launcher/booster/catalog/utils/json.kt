@@ -2,10 +2,12 @@ package io.fabric8.launcher.booster.catalog.utils
 
 import org.json.simple.JSONArray
 import org.json.simple.JSONObject
+import org.json.simple.JSONValue
 import org.json.simple.parser.JSONParser
 import java.io.IOException
 import java.nio.file.Files
 import java.nio.file.Path
+import java.nio.file.StandardCopyOption
 
 fun readCatalog(catalogJson: Path): List<Map<String, Any?>> {
     val parser = JSONParser()
@@ -22,3 +24,19 @@ fun readMetadata(metadataJson: Path): Map<String, Any?> {
         return metadata as Map<String, Any?>
     }
 }
+
+/**
+ * Writes the given data as JSON to a file. The data is first written to a temporary
+ * file that then replaces the target, so readers never see a partially written file.
+ */
+fun writeJson(jsonFile: Path, data: Any?) {
+    val tmpFile = Files.createTempFile(jsonFile.toAbsolutePath().parent, jsonFile.fileName.toString(), ".tmp")
+    try {
+        Files.newBufferedWriter(tmpFile).use { writer ->
+            JSONValue.writeJSONString(data, writer)
+        }
+        Files.move(tmpFile, jsonFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    } finally {
+        Files.deleteIfExists(tmpFile)
+    }
+}
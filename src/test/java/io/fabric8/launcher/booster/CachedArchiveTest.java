@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.within;
+
+public class CachedArchiveTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteWithRootAndCustomizedFiles() throws IOException {
+        Path source = folder.newFolder("source").toPath();
+        Files.createDirectories(source.resolve("src/main"));
+        Files.write(source.resolve("src/main/App.java"), "app".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("pom.xml"), "<project/>".getBytes(StandardCharsets.UTF_8));
+        FileTime appTime = FileTime.from(Instant.parse("2019-06-15T10:20:30Z"));
+        Files.setLastModifiedTime(source.resolve("src/main/App.java"), appTime);
+        Files.setLastModifiedTime(source.resolve("src/main"), appTime);
+        FileManifest manifest = FileManifest.build(source, p -> true);
+
+        Path archiveFile = folder.getRoot().toPath().resolve("archive.zip");
+        CachedArchive.build(archiveFile, source, manifest);
+        CachedArchive archive = CachedArchive.open(archiveFile);
+        softly.assertThat(archive).isNotNull();
+
+        Path zip = folder.getRoot().toPath().resolve("project.zip");
+        try (OutputStream os = Files.newOutputStream(zip)) {
+            archive.writeTo(os, "my-project", Collections.singletonMap("pom.xml", "<project>custom</project>".getBytes(StandardCharsets.UTF_8)));
+        }
+        Path target = folder.newFolder("target").toPath();
+        io.fabric8.launcher.booster.Files.INSTANCE.unzip(zip, target);
+        softly.assertThat(target.resolve("my-project/src/main/App.java")).hasContent("app");
+        softly.assertThat(target.resolve("my-project/pom.xml")).hasContent("<project>custom</project>");
+
+        // The entries keep the times of the files, customized files get the time the archive was written
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            softly.assertThat(zf.getEntry("my-project/src/main/App.java").getTime()).isEqualTo(appTime.toMillis());
+            softly.assertThat(zf.getEntry("my-project/src/main/").getTime()).isEqualTo(appTime.toMillis());
+            softly.assertThat(zf.getEntry("my-project/pom.xml").getTime())
+                    .isCloseTo(System.currentTimeMillis(), within(TimeUnit.MINUTES.toMillis(1)));
+        }
+    }
+}
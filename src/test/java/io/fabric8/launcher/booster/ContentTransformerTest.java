@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContentTransformerTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplacingAcrossBufferBoundaries() throws IOException {
+        Map<String, String> replacements = new HashMap<>();
+        replacements.put("${name}", "demo");
+        replacements.put("${name.upper}", "DEMO");
+        ContentTransformer transformer = ContentTransformers.replacing(replacements);
+
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            input.append("x${name}-${name.upper}$");
+            expected.append("xdemo-DEMO$");
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        transformer.transform(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)), output);
+        softly.assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(expected.toString());
+    }
+
+    @Test
+    public void testCopyWithTransformers() throws IOException {
+        Path source = folder.newFolder("source").toPath();
+        Files.write(source.resolve("pom.xml"), "<artifactId>${name}</artifactId>".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("README.md"), "${name}".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("run.sh"), "echo ${name}".getBytes(StandardCharsets.UTF_8));
+        Files.setPosixFilePermissions(source.resolve("run.sh"), PosixFilePermissions.fromString("rwxr-xr-x"));
+        FileManifest manifest = FileManifest.build(source, p -> true);
+
+        ContentTransformer transformer = ContentTransformers.replacing(Collections.singletonMap("${name}", "demo"));
+        Map<String, ContentTransformer> transformers = new HashMap<>();
+        transformers.put("pom.xml", transformer);
+        transformers.put("run.sh", transformer);
+
+        Path target = folder.getRoot().toPath().resolve("target");
+        manifest.copy(source, target, CopyStrategy.COPY, transformers);
+        softly.assertThat(target.resolve("pom.xml")).hasContent("<artifactId>demo</artifactId>");
+        softly.assertThat(target.resolve("README.md")).hasContent("${name}");
+        softly.assertThat(target.resolve("run.sh")).hasContent("echo demo");
+        softly.assertThat(Files.isExecutable(target.resolve("run.sh"))).isTrue();
+
+        Path parallel = folder.getRoot().toPath().resolve("parallel");
+        new ParallelCopier(2).copy(source, parallel, manifest, transformers);
+        softly.assertThat(parallel.resolve("pom.xml")).hasContent("<artifactId>demo</artifactId>");
+
+        Path memory = folder.getRoot().toPath().resolve("memory");
+        InMemoryContent.load(source, manifest).copy(memory, transformers);
+        softly.assertThat(memory.resolve("run.sh")).hasContent("echo demo");
+    }
+}
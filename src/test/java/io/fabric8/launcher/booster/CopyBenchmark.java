@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Compares copying a synthetic tree of 10k files on the calling thread with
+ * copying it using a {@link ParallelCopier}. Run it as a plain Java main; the
+ * shared copy pool is sized by LAUNCHER_COPY_MAX_THREADS.
+ */
+public class CopyBenchmark {
+
+    private static final int DIRECTORIES = 100;
+
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        Path root = Files.createTempDirectory("copy-benchmark");
+        try {
+            Path source = createTree(root.resolve("source"));
+            Predicate<Path> filter = p -> !p.getFileName().toString().equals(".git");
+            int[] parallelisms = {0, 1, 2, 4, 8};
+            long[] best = new long[parallelisms.length];
+            Arrays.fill(best, Long.MAX_VALUE);
+            // Interleave the runs so that all variants suffer the same from disk caching and write-back
+            for (int run = 0; run < RUNS; run++) {
+                for (int i = 0; i < parallelisms.length; i++) {
+                    Path target = root.resolve("target");
+                    long start = System.nanoTime();
+                    if (parallelisms[i] == 0) {
+                        Files.walkFileTree(source, new CopyFileVisitor(target, filter));
+                    } else {
+                        new ParallelCopier(parallelisms[i]).copy(source, target, filter);
+                    }
+                    best[i] = Math.min(best[i], System.nanoTime() - start);
+                    io.fabric8.launcher.booster.Files.INSTANCE.deleteRecursively(target);
+                }
+            }
+            for (int i = 0; i < parallelisms.length; i++) {
+                String name = parallelisms[i] == 0 ? "CopyFileVisitor" : "ParallelCopier(" + parallelisms[i] + ")";
+                System.out.printf("%-20s %6d ms%n", name, best[i] / 1_000_000);
+            }
+        } finally {
+            io.fabric8.launcher.booster.Files.INSTANCE.deleteRecursively(root);
+        }
+    }
+
+    private static Path createTree(Path source) throws IOException {
+        Random random = new Random(42);
+        for (int d = 0; d < DIRECTORIES; d++) {
+            Path dir = source.resolve("module" + d % 10).resolve("dir" + d);
+            Files.createDirectories(dir);
+            for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+                byte[] data = new byte[512 + random.nextInt(16 * 1024)];
+                random.nextBytes(data);
+                Files.write(dir.resolve("file" + f + ".bin"), data);
+            }
+        }
+        return source;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CopyStrategyTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCopyStrategiesKeepCacheIntact() throws IOException {
+        Path cache = folder.newFolder("cache").toPath();
+        Files.createDirectories(cache.resolve("src"));
+        Files.write(cache.resolve("pom.xml"), "pom".getBytes(StandardCharsets.UTF_8));
+        Files.write(cache.resolve("src/App.java"), "app".getBytes(StandardCharsets.UTF_8));
+        Files.write(cache.resolve(".git"), "git".getBytes(StandardCharsets.UTF_8));
+
+        for (CopyStrategy strategy : CopyStrategy.values()) {
+            Path project = folder.getRoot().toPath().resolve("project-" + strategy);
+            Files.walkFileTree(cache, new CopyFileVisitor(project, p -> !p.getFileName().toString().equals(".git"), strategy));
+
+            softly.assertThat(project.resolve("pom.xml")).hasContent("pom");
+            softly.assertThat(project.resolve("src/App.java")).hasContent("app");
+            softly.assertThat(project.resolve(".git")).doesNotExist();
+
+            // Replacing a file must always be possible
+            Files.delete(project.resolve("pom.xml"));
+            Files.write(project.resolve("pom.xml"), "changed".getBytes(StandardCharsets.UTF_8));
+            softly.assertThat(cache.resolve("pom.xml")).hasContent("pom");
+
+            // Only hard links are ever swapped for something else, and only for a plain copy
+            softly.assertThat(strategy.resolve(cache, project)).isIn(strategy, CopyStrategy.COPY);
+            if (strategy.resolve(cache, project) == CopyStrategy.HARD_LINK) {
+                softly.assertThat(Files.getPosixFilePermissions(cache.resolve("src/App.java")))
+                        .doesNotContain(PosixFilePermission.OWNER_WRITE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.OTHERS_WRITE);
+            }
+            // Writing to the copy must never change the cache, for links it's enough that it fails
+            try {
+                Files.write(project.resolve("src/App.java"), "changed".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                softly.assertThat(strategy.resolve(cache, project)).isEqualTo(CopyStrategy.HARD_LINK);
+            }
+            softly.assertThat(cache.resolve("src/App.java")).hasContent("app");
+        }
+    }
+}
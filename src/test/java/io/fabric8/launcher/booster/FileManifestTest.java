@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.stream.Collectors;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileManifestTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBuildWriteReadAndCopy() throws IOException {
+        Path source = folder.newFolder("source").toPath();
+        Files.createDirectories(source.resolve("src/main"));
+        Files.createDirectories(source.resolve(".git"));
+        Files.write(source.resolve(".git/HEAD"), "ref".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("src/main/App.java"), "app".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("mvnw"), "#!/bin/sh".getBytes(StandardCharsets.UTF_8));
+        Files.setPosixFilePermissions(source.resolve("mvnw"), PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        FileManifest manifest = FileManifest.build(source, p -> !p.getFileName().toString().equals(".git"));
+        softly.assertThat(manifest.getEntries().stream().map(FileManifest.Entry::getPath).sorted().collect(Collectors.toList()))
+                .containsExactly("mvnw", "src", "src/main", "src/main/App.java");
+        FileManifest.Entry app = manifest.getFiles().stream().filter(e -> e.getPath().equals("src/main/App.java")).findFirst().get();
+        softly.assertThat(app.getSize()).isEqualTo(3);
+        softly.assertThat(app.getSha256()).isEqualTo("a172cedcae47474b615c54d510a5d84a8dea3032e958587430b413538be3f333");
+        softly.assertThat(app.isExecutable()).isFalse();
+
+        Path manifestFile = folder.getRoot().toPath().resolve("manifest.json");
+        manifest.write(manifestFile);
+        FileManifest read = FileManifest.read(manifestFile);
+        softly.assertThat(read.getEntries()).usingFieldByFieldElementComparator().isEqualTo(manifest.getEntries());
+
+        Path target = folder.getRoot().toPath().resolve("target");
+        read.copy(source, target);
+        softly.assertThat(target.resolve("src/main/App.java")).hasContent("app");
+        softly.assertThat(target.resolve(".git")).doesNotExist();
+        softly.assertThat(Files.isExecutable(target.resolve("mvnw"))).isTrue();
+
+        Path parallelTarget = folder.getRoot().toPath().resolve("parallel");
+        new ParallelCopier(2).copy(source, parallelTarget, read);
+        softly.assertThat(parallelTarget.resolve("src/main/App.java")).hasContent("app");
+        softly.assertThat(Files.getPosixFilePermissions(parallelTarget.resolve("mvnw")))
+                .isEqualTo(PosixFilePermissions.fromString("rwxr-xr-x"));
+    }
+}
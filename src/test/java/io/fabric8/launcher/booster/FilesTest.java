@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FilesTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStreamingZipFromManifest() throws IOException {
+        Path source = folder.newFolder("source").toPath();
+        Files.createDirectories(source.resolve("src/main"));
+        Files.createDirectories(source.resolve("docs/images"));
+        byte[] big = new byte[200_000];
+        for (int i = 0; i < big.length; i++) {
+            big[i] = (byte) (i % 7);
+        }
+        Files.write(source.resolve("src/main/App.java"), big);
+        Files.write(source.resolve("logo.png"), "not really a png".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("docs/images/diagram.svg"), "svg".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("pom.xml"), "<project/>".getBytes(StandardCharsets.UTF_8));
+        FileTime time = FileTime.from(Instant.parse("2019-06-15T10:20:30Z"));
+        Files.setLastModifiedTime(source.resolve("src/main/App.java"), time);
+        Files.setLastModifiedTime(source.resolve("logo.png"), time);
+        FileManifest manifest = FileManifest.build(source, p -> true);
+
+        Path zip = folder.getRoot().toPath().resolve("project.zip");
+        try (OutputStream os = Files.newOutputStream(zip)) {
+            io.fabric8.launcher.booster.Files.INSTANCE.zip("demo", source, manifest, os,
+                                                           p -> !p.getFileName().toString().equals("docs"),
+                                                           Deflater.BEST_SPEED,
+                                                           Collections.singletonMap("pom.xml", "<project>custom</project>".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            softly.assertThat(zf.getEntry("demo/docs/")).isNull();
+            softly.assertThat(zf.getEntry("demo/docs/images/diagram.svg")).isNull();
+            ZipEntry app = zf.getEntry("demo/src/main/App.java");
+            softly.assertThat(app.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+            softly.assertThat(app.getCompressedSize()).isLessThan(big.length);
+            softly.assertThat(app.getTime()).isEqualTo(time.toMillis());
+            try (InputStream is = zf.getInputStream(app)) {
+                softly.assertThat(is).hasSameContentAs(Files.newInputStream(source.resolve("src/main/App.java")));
+            }
+            softly.assertThat(zf.getEntry("demo/logo.png").getMethod()).isEqualTo(ZipEntry.STORED);
+            softly.assertThat(zf.getEntry("demo/logo.png").getTime()).isEqualTo(time.toMillis());
+            try (InputStream is = zf.getInputStream(zf.getEntry("demo/pom.xml"))) {
+                softly.assertThat(is).hasSameContentAs(new java.io.ByteArrayInputStream("<project>custom</project>".getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class InMemoryContentTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCopyAndZipFromMemory() throws IOException {
+        Path source = folder.newFolder("source").toPath();
+        Files.createDirectories(source.resolve("src/main"));
+        Files.write(source.resolve("src/main/App.java"), "app".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("logo.png"), "png".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("mvnw"), "#!/bin/sh".getBytes(StandardCharsets.UTF_8));
+        Files.setPosixFilePermissions(source.resolve("mvnw"), PosixFilePermissions.fromString("rwxr-xr-x"));
+        FileManifest manifest = FileManifest.build(source, p -> true);
+
+        InMemoryContent content = InMemoryContent.load(source, manifest);
+        softly.assertThat(content.getSize()).isEqualTo(3 + 3 + 9);
+        // Once loaded the files on disk aren't needed anymore
+        Files.delete(source.resolve("src/main/App.java"));
+
+        Path target = folder.getRoot().toPath().resolve("target");
+        content.copy(target);
+        softly.assertThat(target.resolve("src/main/App.java")).hasContent("app");
+        softly.assertThat(Files.isExecutable(target.resolve("mvnw"))).isTrue();
+
+        ByteArrayOutputStream fromMemory = new ByteArrayOutputStream();
+        content.zip("demo", source, fromMemory);
+        ByteArrayOutputStream fromDisk = new ByteArrayOutputStream();
+        io.fabric8.launcher.booster.Files.INSTANCE.zip("demo", target, manifest, fromDisk);
+        softly.assertThat(fromMemory.toByteArray()).isEqualTo(fromDisk.toByteArray());
+
+        softly.assertThatThrownBy(() -> content.open("missing.txt")).isInstanceOf(NoSuchFileException.class);
+    }
+}
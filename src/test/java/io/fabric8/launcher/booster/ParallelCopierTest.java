@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelCopierTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameResultAsCopyFileVisitor() throws IOException {
+        Path source = folder.newFolder("source").toPath();
+        for (int d = 0; d < 5; d++) {
+            Path dir = source.resolve("dir" + d).resolve("sub");
+            Files.createDirectories(dir);
+            for (int f = 0; f < 20; f++) {
+                Files.write(dir.resolve("file" + f + ".txt"), ("content " + d + f).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Files.createDirectories(source.resolve(".git/objects"));
+        Files.write(source.resolve(".git/HEAD"), "ref".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve(".travis.yml"), "yml".getBytes(StandardCharsets.UTF_8));
+        Predicate<Path> filter = p -> !p.getFileName().toString().equals(".git") && !p.getFileName().toString().equals(".travis.yml");
+
+        Path sequential = folder.getRoot().toPath().resolve("sequential");
+        Files.walkFileTree(source, new CopyFileVisitor(sequential, filter));
+        Path parallel = folder.getRoot().toPath().resolve("parallel");
+        new ParallelCopier(4).copy(source, parallel, filter);
+
+        List<String> expected = list(sequential);
+        softly.assertThat(expected).hasSize(1 + 5 * 22);
+        softly.assertThat(list(parallel)).isEqualTo(expected);
+        softly.assertThat(parallel.resolve("dir3/sub/file7.txt")).hasContent("content 37");
+    }
+
+    @Test
+    public void testSymbolicLinksAreFollowed() throws IOException {
+        Path source = links();
+        Path sequential = folder.newFolder("sequential").toPath();
+        Files.walkFileTree(source, new CopyFileVisitor(sequential, p -> true));
+        Path parallel = folder.getRoot().toPath().resolve("parallel");
+        new ParallelCopier(4).copy(source, parallel, p -> true);
+
+        softly.assertThat(list(parallel)).isEqualTo(list(sequential));
+        assertFollowed(parallel);
+    }
+
+    @Test
+    public void testSymbolicLinksAreFollowedThroughManifest() throws IOException {
+        Path source = links();
+        FileManifest manifest = FileManifest.build(source, p -> true);
+        Path sequential = folder.newFolder("sequential").toPath();
+        Files.walkFileTree(source, new CopyFileVisitor(sequential, p -> true));
+        Path parallel = folder.getRoot().toPath().resolve("parallel");
+        new ParallelCopier(4).copy(source, parallel, manifest);
+        Path copied = folder.getRoot().toPath().resolve("manifest");
+        manifest.copy(source, copied);
+
+        softly.assertThat(list(parallel)).isEqualTo(list(sequential));
+        softly.assertThat(list(copied)).isEqualTo(list(sequential));
+        assertFollowed(parallel);
+        assertFollowed(copied);
+    }
+
+    private Path links() throws IOException {
+        Path source = folder.newFolder("links").toPath();
+        Files.write(source.resolve("README.md"), "readme".getBytes(StandardCharsets.UTF_8));
+        Files.createSymbolicLink(source.resolve("README"), Paths.get("README.md"));
+        Files.createDirectories(source.resolve("docs"));
+        Files.write(source.resolve("docs/index.md"), "index".getBytes(StandardCharsets.UTF_8));
+        Files.createSymbolicLink(source.resolve("documentation"), Paths.get("docs"));
+        return source;
+    }
+
+    private void assertFollowed(Path target) {
+        softly.assertThat(Files.isSymbolicLink(target.resolve("README"))).isFalse();
+        softly.assertThat(target.resolve("README")).hasContent("readme");
+        softly.assertThat(Files.isSymbolicLink(target.resolve("documentation"))).isFalse();
+        softly.assertThat(target.resolve("documentation")).isDirectory();
+        softly.assertThat(target.resolve("documentation/index.md")).doesNotExist();
+    }
+
+    private static List<String> list(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.map(p -> root.relativize(p).toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParallelUnzipperTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUnzip() throws IOException {
+        Path zip = folder.getRoot().toPath().resolve("project.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+            zos.putNextEntry(new ZipEntry("demo/"));
+            for (int i = 0; i < 20; i++) {
+                // No directory entries for these, the directories have to be created anyway
+                zos.putNextEntry(new ZipEntry("demo/src/dir" + i % 3 + "/file" + i + ".txt"));
+                zos.write(("content " + i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Path target = folder.newFolder("target").toPath();
+        new ParallelUnzipper(4).unzip(zip, target);
+        softly.assertThat(target.resolve("demo/src/dir1/file7.txt")).hasContent("content 7");
+        softly.assertThat(target.resolve("demo/src/dir2/file14.txt")).hasContent("content 14");
+    }
+
+    @Test
+    public void testLimits() throws IOException {
+        Path zip = folder.getRoot().toPath().resolve("bomb.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (int i = 0; i < 5; i++) {
+                zos.putNextEntry(new ZipEntry("zeros" + i));
+                zos.write(new byte[100_000]);
+            }
+        }
+        assertThatThrownBy(() -> new ParallelUnzipper(2, 4).unzip(zip, folder.newFolder().toPath()))
+                .isInstanceOf(IOException.class).hasMessageContaining("entries");
+        assertThatThrownBy(() -> new ParallelUnzipper(2, 10, 250_000).unzip(zip, folder.newFolder().toPath()))
+                .isInstanceOf(IOException.class).hasMessageContaining("bytes");
+    }
+
+    @Test
+    public void testZipSlip() throws IOException {
+        Path zip = folder.getRoot().toPath().resolve("slip.zip");
+        try (OutputStream os = Files.newOutputStream(zip); ZipOutputStream zos = new ZipOutputStream(os)) {
+            zos.putNextEntry(new ZipEntry("../evil.txt"));
+            zos.write(1);
+        }
+        Path target = folder.newFolder("target").toPath();
+        assertThatThrownBy(() -> new ParallelUnzipper(2).unzip(zip, target))
+                .isInstanceOf(IOException.class).hasMessageContaining("Illegal Zip entry name");
+        softly.assertThat(folder.getRoot().toPath().resolve("evil.txt")).doesNotExist();
+    }
+}
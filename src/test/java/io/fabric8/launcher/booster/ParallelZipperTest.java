@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParallelZipperTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSameContentAsSingleThreadedZip() throws IOException {
+        Path source = folder.newFolder("source").toPath();
+        Random random = new Random(1);
+        for (int d = 0; d < 4; d++) {
+            Path dir = source.resolve("dir" + d);
+            Files.createDirectories(dir);
+            for (int f = 0; f < 10; f++) {
+                byte[] data = new byte[random.nextInt(4096)];
+                random.nextBytes(data);
+                Files.write(dir.resolve("file" + f + (f % 3 == 0 ? ".jar" : ".txt")), data);
+            }
+        }
+        // Large enough to be spilled to disk
+        Files.write(source.resolve("big.txt"), new byte[3 * 1024 * 1024]);
+        FileManifest manifest = FileManifest.build(source, p -> true);
+
+        Path single = folder.getRoot().toPath().resolve("single.zip");
+        try (OutputStream os = Files.newOutputStream(single)) {
+            io.fabric8.launcher.booster.Files.INSTANCE.zip("root", source, manifest, os);
+        }
+        Path parallel = folder.getRoot().toPath().resolve("parallel.zip");
+        try (OutputStream os = Files.newOutputStream(parallel)) {
+            new ParallelZipper(3).zip("root", source, manifest, os);
+        }
+
+        Path singleDir = folder.newFolder("single").toPath();
+        io.fabric8.launcher.booster.Files.INSTANCE.unzip(single, singleDir);
+        Path parallelDir = folder.newFolder("parallel").toPath();
+        io.fabric8.launcher.booster.Files.INSTANCE.unzip(parallel, parallelDir);
+        FileManifest expected = FileManifest.build(singleDir, p -> true);
+        FileManifest actual = FileManifest.build(parallelDir, p -> true);
+        softly.assertThat(actual.getEntries()).hasSize(1 + 4 + 40 + 1);
+        softly.assertThat(actual.getEntries()).usingElementComparatorOnFields("path", "size", "sha256")
+                .isEqualTo(expected.getEntries());
+
+        // The entries are in the same order and keep the times of the files
+        softly.assertThat(entries(parallel)).isEqualTo(entries(single));
+        softly.assertThat(entries(parallel)).contains("root/dir2/file4.txt@" + time(source.resolve("dir2/file4.txt")),
+                                                      "root/big.txt@" + time(source.resolve("big.txt")));
+    }
+
+    @Test
+    public void testNoSpillFilesLeftWhenZipFails() throws IOException {
+        Path source = folder.newFolder("big").toPath();
+        // The first entry is done quickly, so the archive fails while the others are being deflated
+        Files.write(source.resolve("a.txt"), new byte[1024]);
+        Random random = new Random(1);
+        for (int f = 0; f < 6; f++) {
+            byte[] data = new byte[8 * 1024 * 1024];
+            random.nextBytes(data);
+            Files.write(source.resolve("big" + f + ".txt"), data);
+        }
+        FileManifest manifest = FileManifest.build(source, p -> true);
+        Path tmp = Paths.get(System.getProperty("java.io.tmpdir"));
+        List<Path> before = spillFiles(tmp);
+
+        OutputStream failing = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++written > 100) {
+                    throw new IOException("Disk full");
+                }
+            }
+        };
+        assertThatThrownBy(() -> new ParallelZipper(3).zip("root", source, manifest, failing))
+                .isInstanceOf(IOException.class);
+        softly.assertThat(spillFiles(tmp)).isSubsetOf(before);
+
+        // The same goes for an archive that gets interrupted
+        OutputStream interrupting = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) {
+                if (++written == 100) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        assertThatThrownBy(() -> new ParallelZipper(3).zip("root", source, manifest, interrupting))
+                .isInstanceOf(IOException.class);
+        softly.assertThat(Thread.interrupted()).isTrue();
+        softly.assertThat(spillFiles(tmp)).isSubsetOf(before);
+    }
+
+    // The archive's own root directory is left out, it gets the time the archive was written
+    private static List<String> entries(Path zip) throws IOException {
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            return zf.stream().filter(e -> !e.getName().equals("root/"))
+                    .map(e -> e.getName() + "@" + e.getTime()).collect(Collectors.toList());
+        }
+    }
+
+    // Zip archives store times with a two second precision
+    private static long time(Path file) throws IOException {
+        return Files.getLastModifiedTime(file).toMillis() / 2000 * 2000;
+    }
+
+    private static List<Path> spillFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("zip-spill")).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the throughput of zipping a synthetic tree of a few dozen MB with
+ * {@link io.fabric8.launcher.booster.Files#zip}, the streaming zip from a manifest
+ * and {@link ParallelZipper}. Run it as a plain Java main; the shared pool is sized
+ * by LAUNCHER_COPY_MAX_THREADS.
+ */
+public class ZipBenchmark {
+
+    private static final int FILES = 400;
+
+    private static final int RUNS = 5;
+
+    private static final OutputStream NULL = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    public static void main(String[] args) throws IOException {
+        Path source = Files.createTempDirectory("zip-benchmark");
+        try {
+            long bytes = createTree(source);
+            FileManifest manifest = FileManifest.build(source, p -> true);
+            String[] names = {"Files.zip", "Files.zip(manifest)", "ParallelZipper(2)", "ParallelZipper(4)", "ParallelZipper(8)"};
+            long[] best = new long[names.length];
+            Arrays.fill(best, Long.MAX_VALUE);
+            for (int run = 0; run < RUNS; run++) {
+                for (int i = 0; i < names.length; i++) {
+                    long start = System.nanoTime();
+                    switch (i) {
+                        case 0:
+                            io.fabric8.launcher.booster.Files.INSTANCE.zip("root", source, NULL, p -> true);
+                            break;
+                        case 1:
+                            io.fabric8.launcher.booster.Files.INSTANCE.zip("root", source, manifest, NULL);
+                            break;
+                        default:
+                            new ParallelZipper(1 << (i - 1)).zip("root", source, manifest, NULL);
+                    }
+                    best[i] = Math.min(best[i], System.nanoTime() - start);
+                }
+            }
+            for (int i = 0; i < names.length; i++) {
+                System.out.printf("%-20s %6d ms %8.1f MB/s%n", names[i], best[i] / 1_000_000,
+                                  bytes / 1024.0 / 1024.0 / (best[i] / 1e9));
+            }
+        } finally {
+            io.fabric8.launcher.booster.Files.INSTANCE.deleteRecursively(source);
+        }
+    }
+
+    private static long createTree(Path source) throws IOException {
+        Random random = new Random(42);
+        long total = 0;
+        for (int f = 0; f < FILES; f++) {
+            Path dir = source.resolve("dir" + f % 20);
+            Files.createDirectories(dir);
+            // Somewhat compressible data: random words from a small vocabulary
+            StringBuilder sb = new StringBuilder();
+            int size = 16 * 1024 + random.nextInt(256 * 1024);
+            while (sb.length() < size) {
+                sb.append("word").append(random.nextInt(500)).append(random.nextInt(10) == 0 ? '\n' : ' ');
+            }
+            byte[] data = sb.toString().getBytes("UTF-8");
+            Files.write(dir.resolve("file" + f + ".txt"), data);
+            total += data.length;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import io.fabric8.launcher.booster.FileManifest;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BlobStoreTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSharedFilesAreStoredOnceAndReleased() throws IOException {
+        Path root = folder.getRoot().toPath();
+        Path first = createContent(root.resolve(".boosters/first/v1"), "first");
+        Path second = createContent(root.resolve(".boosters/second/v1"), "second");
+        Path blobs = root.resolve(BlobStore.BLOBS_DIR);
+
+        BlobStore store = new BlobStore(blobs);
+        store.add("first", first, FileManifest.build(first, p -> true));
+        store.add("second", second, FileManifest.build(second, p -> true));
+        softly.assertThat(Files.isSameFile(first.resolve("pom.xml"), second.resolve("pom.xml"))).isTrue();
+        softly.assertThat(second.resolve("README.md")).hasContent("second");
+        softly.assertThat(countBlobs(blobs)).isEqualTo(3);
+
+        softly.assertThat(store.retain(Collections.singleton("second"))).containsExactly(first);
+        softly.assertThat(countBlobs(blobs)).isEqualTo(2);
+        softly.assertThat(second.resolve("pom.xml")).hasContent("<project/>");
+
+        // The references survive a restart
+        BlobStore reloaded = new BlobStore(blobs);
+        softly.assertThat(reloaded.retain(Collections.emptySet())).containsExactly(second);
+        softly.assertThat(countBlobs(blobs)).isEqualTo(0);
+    }
+
+    private static Path createContent(Path dir, String readme) throws IOException {
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("pom.xml"), "<project/>".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("README.md"), readme.getBytes(StandardCharsets.UTF_8));
+        return dir;
+    }
+
+    private static long countBlobs(Path blobs) throws IOException {
+        try (Stream<Path> files = Files.walk(blobs)) {
+            return files.filter(Files::isRegularFile).filter(p -> !p.getFileName().toString().endsWith(".json")).count();
+        }
+    }
+}
@@ -9,12 +9,25 @@ package io.fabric8.launcher.booster.catalog;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
 import javax.annotation.Nullable;
@@ -27,6 +40,7 @@ import org.assertj.core.api.JUnitSoftAssertions;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -36,6 +50,9 @@ public class BoosterCatalogServiceTest {
     @Rule
     public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     @Nullable
     private static BoosterCatalogService defaultService;
 
@@ -159,6 +176,166 @@ public class BoosterCatalogServiceTest {
         });
     }
 
+    @Test
+    public void testPrefetchByPopularity() throws Exception {
+        Path root = folder.newFolder("popularity").toPath();
+        List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+        BoosterCatalogService service = defaultCatalogBuilder()
+                .sourceProvider((Booster b) -> {
+                    fetched.add(b.getId());
+                    return root;
+                })
+                .rootDir(root)
+                .prefetchLimit(2)
+                .build();
+        service.index().get();
+        List<Booster> boosters = new ArrayList<>(service.getBoosters());
+        Booster popular = boosters.get(3);
+        Booster lessPopular = boosters.get(7);
+        for (int i = 0; i < 3; i++) {
+            popular.content().get();
+        }
+        lessPopular.content().get();
+        softly.assertThat(service.getPopularity(popular)).isEqualTo(3);
+
+        // Re-indexing persists the counts
+        service.reindex().get();
+
+        // A new service, as if after a restart, pre-fetches the most popular boosters first
+        fetched.clear();
+        BoosterCatalogService restarted = defaultCatalogBuilder()
+                .sourceProvider((Booster b) -> {
+                    fetched.add(b.getId());
+                    return root;
+                })
+                .rootDir(root)
+                .prefetchLimit(2)
+                .build();
+        restarted.index().get();
+        restarted.prefetchBoosters().get();
+        softly.assertThat(fetched).containsExactly(popular.getId(), lessPopular.getId());
+    }
+
+    @Test
+    public void testSpeculativeFetch() throws Exception {
+        BlockingQueue<String> fetched = new LinkedBlockingQueue<>();
+        List<Integer> priorities = Collections.synchronizedList(new ArrayList<>());
+        Function1<Booster, Path> provider = (Booster b) -> {
+            priorities.add(Thread.currentThread().getPriority());
+            fetched.add(b.getId());
+            return folder.getRoot().toPath();
+        };
+        Predicate<Booster> single = missions("rest-http").and(runtimes("vert.x")).and(versions("community"));
+
+        // Disabled by default
+        softly.assertThat(defaultCatalogBuilder().getSpeculativeFetchDeadline()).isNull();
+        BoosterCatalogService disabled = defaultCatalogBuilder().sourceProvider(provider).build();
+        disabled.index().get();
+        softly.assertThat(disabled.getBooster(single)).isPresent();
+        softly.assertThat(fetched.poll(100, TimeUnit.MILLISECONDS)).isNull();
+
+        BoosterCatalogService service = defaultCatalogBuilder()
+                .sourceProvider(provider)
+                .speculativeFetch(Duration.ofMinutes(1), 1)
+                .build();
+        service.index().get();
+        softly.assertThat(service.getBoosters(runtimes("spring-boot"))).hasSizeGreaterThan(1);
+        Optional<Booster> booster = service.getBooster(single);
+        softly.assertThat(booster).isPresent();
+        service.getBoosters(single);
+
+        // Fetches are done in order, so the query with too many candidates didn't fetch anything,
+        // and the booster is fetched once although both of the last two queries found it
+        softly.assertThat(fetched.poll(10, TimeUnit.SECONDS)).isEqualTo(booster.get().getId());
+        softly.assertThat(fetched.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        softly.assertThat(priorities).containsExactly(Thread.MIN_PRIORITY);
+        softly.assertThat(service.getPopularity(booster.get())).isZero();
+    }
+
+    @Test
+    public void testCopyAsync() throws Exception {
+        Path source = folder.newFolder("async-source").toPath();
+        Files.createDirectories(source.resolve("src/main"));
+        Files.write(source.resolve("src/main/App.java"), "app".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("README.md"), "readme".getBytes(StandardCharsets.UTF_8));
+        CountDownLatch fetching = new CountDownLatch(1);
+        BoosterCatalogService service = defaultCatalogBuilder()
+                .sourceProvider((Booster b) -> {
+                    if (b.getData().containsKey("blocked")) {
+                        try {
+                            fetching.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                    return source;
+                })
+                .build();
+        service.index().get();
+        Booster booster = service.getBoosters().iterator().next();
+
+        Path target = folder.newFolder("async-target").toPath().resolve("project");
+        softly.assertThat(service.copyAsync(booster, target).get()).isEqualTo(source);
+        softly.assertThat(target.resolve("src/main/App.java")).hasContent("app");
+
+        // A failed copy only removes what it created itself
+        Path existing = folder.newFolder("async-existing").toPath();
+        Files.write(existing.resolve("src"), "not a directory".getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> service.copyAsync(booster, existing).get())
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IOException.class);
+        softly.assertThat(existing.resolve("src")).hasContent("not a directory");
+        softly.assertThat(existing.resolve("README.md")).doesNotExist();
+
+        // Cancelling while the content is being fetched means nothing gets copied
+        Booster blocked = new Booster(Collections.singletonMap("blocked", "true"), service);
+        Path cancelled = target.resolveSibling("cancelled");
+        CompletableFuture<Path> result = service.copyAsync(blocked, cancelled);
+        result.cancel(true);
+        fetching.countDown();
+        blocked.content().get();
+        softly.assertThat(result).isCancelled();
+        softly.assertThat(cancelled).doesNotExist();
+    }
+
+    @Test
+    public void testCopyAll() throws Exception {
+        Path source = folder.newFolder("batch-source").toPath();
+        Files.createDirectories(source.resolve("src"));
+        Files.write(source.resolve("src/App.java"), "app".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("pom.xml"), "<project/>".getBytes(StandardCharsets.UTF_8));
+        List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+        BoosterCatalogService service = defaultCatalogBuilder()
+                .sourceProvider((Booster b) -> {
+                    fetched.add(b.getId());
+                    return source;
+                })
+                .build();
+        service.index().get();
+        Iterator<Booster> boosters = service.getBoosters().iterator();
+        Booster first = boosters.next();
+        Booster second = boosters.next();
+
+        Path root = folder.newFolder("batch-targets").toPath();
+        Map<Path, Booster> targets = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            targets.put(root.resolve("project" + i), i % 2 == 0 ? first : second);
+        }
+        Path broken = root.resolve("broken");
+        Files.createDirectories(broken);
+        Files.write(broken.resolve("src"), "not a directory".getBytes(StandardCharsets.UTF_8));
+        targets.put(broken, first);
+
+        BatchCopyReport report = service.copyAll(targets);
+        softly.assertThat(fetched).containsExactlyInAnyOrder(first.getId(), second.getId());
+        softly.assertThat(report.getCopied()).hasSize(10);
+        softly.assertThat(report.getFailures().keySet()).containsExactly(broken);
+        softly.assertThat(report.getFiles()).isEqualTo(20);
+        softly.assertThat(report.getBytes()).isEqualTo(10 * (3 + 10));
+        softly.assertThat(root.resolve("project7/src/App.java")).hasContent("app");
+        softly.assertThat(broken.resolve("pom.xml")).doesNotExist();
+    }
+
     private static Predicate<Booster> missions(@Nullable String mission) {
         return (Booster b) -> mission == null || mission.equals(b.getMetadata("mission"));
     }
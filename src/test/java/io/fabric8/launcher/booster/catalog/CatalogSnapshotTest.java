@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CatalogSnapshotTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Test
+    public void testDerivedDataIsComputedOnce() throws Exception {
+        CatalogSnapshot<Booster> snapshot = new CatalogSnapshot<>(1, Collections.emptyList());
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> snapshot.derive("key", s -> {
+                computations.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                // Deriving other data from within a computation is allowed
+                return s.derive("other", o -> new Object());
+            })));
+        }
+        softly.assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        // Give the other threads the time to ask for the same data
+        Thread.sleep(100);
+        release.countDown();
+
+        Object first = futures.get(0).get(10, TimeUnit.SECONDS);
+        for (CompletableFuture<Object> future : futures) {
+            softly.assertThat(future.get(10, TimeUnit.SECONDS)).isSameAs(first);
+        }
+        softly.assertThat(computations.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContentJanitorTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDeletesUnreferencedContent() throws Exception {
+        Path boostersDir = folder.newFolder(".boosters").toPath();
+        Path stale = createContent(boostersDir.resolve("first/master-00000001"), 100);
+        Files.write(boostersDir.resolve("first/master-00000001.manifest.json"), new byte[10]);
+        Path current = createContent(boostersDir.resolve("first/master-00000002"), 50);
+        Path otherStale = createContent(boostersDir.resolve("second/v1-00000003"), 20);
+        Path cloning = createContent(boostersDir.resolve("second/.clone-123"), 5);
+
+        ContentJanitor janitor = new ContentJanitor(2, 100);
+        JanitorReport report = janitor.collect(boostersDir, path -> path.equals(current)).get();
+        softly.assertThat(report.getDeleted()).containsExactlyInAnyOrder(stale, otherStale);
+        softly.assertThat(report.getBytesReclaimed()).isEqualTo(100 + 10 + 20);
+        softly.assertThat(report.getFailures()).isEmpty();
+        softly.assertThat(stale).doesNotExist();
+        softly.assertThat(boostersDir.resolve("first/master-00000001.manifest.json")).doesNotExist();
+        softly.assertThat(current.resolve("pom.xml")).exists();
+        softly.assertThat(cloning).exists();
+    }
+
+    private static Path createContent(Path dir, int size) throws IOException {
+        Files.createDirectories(dir.resolve("src"));
+        Files.write(dir.resolve("pom.xml"), new byte[size]);
+        return dir;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import io.fabric8.launcher.booster.catalog.FetchCircuitBreaker.State;
+import io.fabric8.launcher.booster.catalog.utils.JsonKt;
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FetchCircuitBreakerTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private long now = 0;
+
+    @Test
+    public void testRepositoryHost() {
+        softly.assertThat(FetchCircuitBreaker.repositoryHost("https://github.com/snowdrop/spring-boot-http-booster")).isEqualTo("github.com");
+        softly.assertThat(FetchCircuitBreaker.repositoryHost("https://user@GitLab.com:8443/group/repo.git")).isEqualTo("gitlab.com");
+        softly.assertThat(FetchCircuitBreaker.repositoryHost("git@github.com:snowdrop/booster.git")).isEqualTo("github.com");
+        softly.assertThat(FetchCircuitBreaker.repositoryHost(null)).isEqualTo(FetchCircuitBreaker.UNKNOWN_HOST);
+    }
+
+    @Test
+    public void testCircuitOpensAndBacksOff() {
+        FetchCircuitBreaker breaker = new FetchCircuitBreaker(new FetchRetryPolicy(2, Duration.ofSeconds(10), Duration.ofSeconds(30)), () -> now);
+
+        softly.assertThat(breaker.tryAcquire("github.com")).isTrue();
+        breaker.failure("github.com", new ConnectException("first"));
+        softly.assertThat(breaker.tryAcquire("github.com")).isTrue();
+        breaker.failure("github.com", new ConnectException("second"));
+
+        // The circuit is open now
+        softly.assertThat(breaker.tryAcquire("github.com")).isFalse();
+        softly.assertThat(breaker.tryAcquire("gitlab.com")).isTrue();
+        softly.assertThat(breaker.status().get("github.com").getState()).isEqualTo(State.OPEN);
+        softly.assertThat(breaker.status().get("github.com").getLastError()).isEqualTo("second");
+        softly.assertThat(breaker.retryIn("github.com")).isEqualTo(Duration.ofSeconds(10));
+
+        // After the backoff only a single trial is let through
+        now += Duration.ofSeconds(10).toNanos();
+        softly.assertThat(breaker.tryAcquire("github.com")).isTrue();
+        softly.assertThat(breaker.tryAcquire("github.com")).isFalse();
+        breaker.failure("github.com", new ConnectException("third"));
+        softly.assertThat(breaker.retryIn("github.com")).isEqualTo(Duration.ofSeconds(20));
+
+        // The backoff doubles until it reaches the maximum
+        now += Duration.ofSeconds(20).toNanos();
+        softly.assertThat(breaker.tryAcquire("github.com")).isTrue();
+        breaker.failure("github.com", new ConnectException("fourth"));
+        softly.assertThat(breaker.retryIn("github.com")).isEqualTo(Duration.ofSeconds(30));
+
+        // A successful trial closes the circuit
+        now += Duration.ofSeconds(30).toNanos();
+        softly.assertThat(breaker.tryAcquire("github.com")).isTrue();
+        breaker.success("github.com");
+        softly.assertThat(breaker.status().get("github.com").getState()).isEqualTo(State.CLOSED);
+        softly.assertThat(breaker.tryAcquire("github.com")).isTrue();
+    }
+
+    @Test
+    public void testOnlyTransientFailuresCount() {
+        FetchCircuitBreaker breaker = new FetchCircuitBreaker(new FetchRetryPolicy(1, Duration.ofSeconds(10), Duration.ofSeconds(30)), () -> now);
+        IllegalStateException missingRef = new IllegalStateException("Process returned exit code: 128\nwarning: Could not find remote branch nope to clone.\nfatal: Remote branch nope not found in upstream origin");
+        IllegalStateException unreachable = new IllegalStateException("Process returned exit code: 128\nfatal: unable to access 'https://github.com/x/y/': Could not resolve host: github.com");
+
+        softly.assertThat(FetchCircuitBreaker.isTransient(missingRef)).isFalse();
+        softly.assertThat(FetchCircuitBreaker.isTransient(new IOException("Repository not found"))).isFalse();
+        softly.assertThat(FetchCircuitBreaker.isTransient(unreachable)).isTrue();
+        softly.assertThat(FetchCircuitBreaker.isTransient(new IOException("Process timed out after 60s: git clone"))).isTrue();
+        softly.assertThat(FetchCircuitBreaker.isTransient(new UncheckedIOException(new SocketTimeoutException("Read timed out")))).isTrue();
+
+        // A missing ref doesn't stop fetches of other repositories on the same host
+        softly.assertThat(breaker.tryAcquire("github.com")).isTrue();
+        breaker.failure("github.com", missingRef);
+        softly.assertThat(breaker.status().get("github.com").getState()).isEqualTo(State.CLOSED);
+        softly.assertThat(breaker.tryAcquire("github.com")).isTrue();
+        breaker.failure("github.com", unreachable);
+        softly.assertThat(breaker.status().get("github.com").getState()).isEqualTo(State.OPEN);
+
+        // But it does end a trial
+        now += Duration.ofSeconds(10).toNanos();
+        softly.assertThat(breaker.tryAcquire("github.com")).isTrue();
+        breaker.failure("github.com", missingRef);
+        softly.assertThat(breaker.tryAcquire("github.com")).isTrue();
+    }
+
+    @Test
+    public void testServesLastGoodContentWhileHostIsDown() throws Exception {
+        Path content = folder.newFolder("content").toPath();
+        AtomicBoolean fail = new AtomicBoolean(false);
+        AtomicInteger fetches = new AtomicInteger();
+        BoosterCatalogService service = new BoosterCatalogService.Builder()
+                .catalogProvider(() -> JsonKt.readCatalog(Paths.get("src/test/resources/custom-catalogs/test-catalog.json")))
+                .sourceProvider(b -> {
+                    fetches.incrementAndGet();
+                    if (fail.get()) {
+                        throw new UncheckedIOException(new ConnectException("Host is down"));
+                    }
+                    return content;
+                })
+                .fetchRetryPolicy(new FetchRetryPolicy(1, Duration.ofMinutes(1), Duration.ofMinutes(5), true))
+                .build();
+        service.index().get();
+        List<Booster> boosters = service.getBoosters().stream()
+                .filter(b -> "github.com".equals(FetchCircuitBreaker.repositoryHost(b.getGitRepo())))
+                .collect(Collectors.toList());
+        String id = boosters.get(0).getId();
+        softly.assertThat(boosters.get(0).content().get()).isEqualTo(content);
+
+        // After a re-index the booster objects are new and will need to fetch their content again
+        service.reindex().get();
+        fail.set(true);
+        Booster booster = service.getBooster(b -> b.getId().equals(id)).get();
+        softly.assertThat(booster.content().get()).isEqualTo(content);
+        softly.assertThat(service.getHostStatus().get("github.com").getState()).isEqualTo(State.OPEN);
+
+        // Other boosters from the same host fail fast without attempting a fetch
+        int fetchCount = fetches.get();
+        Booster other = service.getBooster(b -> b.getId().equals(boosters.get(1).getId())).get();
+        assertThatThrownBy(() -> other.content().get()).hasMessageContaining("suspended");
+        softly.assertThat(fetches.get()).isEqualTo(fetchCount);
+    }
+}
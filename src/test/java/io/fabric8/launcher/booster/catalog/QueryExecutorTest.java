@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class QueryExecutorTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    @Test
+    public void testParallelOnlyWhenExpensive() {
+        QueryExecutor executor = new QueryExecutor(TimeUnit.MILLISECONDS.toNanos(5));
+        List<Integer> items = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        List<Integer> even = items.stream().filter(i -> i % 2 == 0).collect(Collectors.toList());
+        Predicate<Integer> expensive = evenTakingMicros(20);
+        Predicate<Integer> cheap = evenTakingMicros(0);
+
+        // The first tests are timed on the calling thread, the rest is then done in parallel
+        softly.assertThat(executor.filter(items, expensive).collect(Collectors.toList())).isEqualTo(even);
+        softly.assertThat(executor.cost(expensive)).isGreaterThanOrEqualTo(TimeUnit.MICROSECONDS.toNanos(20));
+        softly.assertThat(threads).contains(Thread.currentThread()).hasSizeGreaterThan(1);
+
+        threads.clear();
+        softly.assertThat(executor.filter(items, expensive).collect(Collectors.toList())).isEqualTo(even);
+        softly.assertThat(threads).doesNotContain(Thread.currentThread());
+
+        // Cheap predicates, even those of the same class, and small lists stay sequential
+        threads.clear();
+        softly.assertThat(executor.filter(items, cheap).collect(Collectors.toList())).isEqualTo(even);
+        executor.filter(items, cheap).count();
+        executor.filter(items.subList(0, 100), expensive).count();
+        softly.assertThat(threads).containsOnly(Thread.currentThread());
+        softly.assertThat(executor.cost(cheap)).isLessThan(executor.cost(expensive));
+    }
+
+    private Predicate<Integer> evenTakingMicros(long micros) {
+        return i -> {
+            threads.add(Thread.currentThread());
+            long end = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(micros);
+            while (System.nanoTime() < end) {
+                // Simulates something like a script evaluation
+            }
+            return i % 2 == 0;
+        };
+    }
+}
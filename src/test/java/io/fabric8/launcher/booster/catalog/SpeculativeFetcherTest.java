@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class SpeculativeFetcherTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    private final Map<String, Integer> fetches = new ConcurrentHashMap<>();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    public void testQueuedOnlyOnce() throws Exception {
+        SpeculativeFetcher fetcher = new SpeculativeFetcher(Duration.ofMinutes(1), 3);
+        Fetcher content = new Fetcher();
+        Booster blocking = new Booster(Collections.singletonMap("name", "blocking"), content);
+        Booster failing = new Booster(Collections.singletonMap("name", "failing"), content);
+        Booster last = new Booster(Collections.singletonMap("name", "last"), content);
+
+        fetcher.submit(blocking);
+        softly.assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        // A failed fetch would be retried, so a second fetch means the booster was queued twice
+        fetcher.submit(failing);
+        fetcher.submit(failing);
+        fetcher.submit(last);
+        release.countDown();
+        softly.assertThat(content.await("last", 1)).isTrue();
+
+        softly.assertThat(fetches).containsEntry("blocking", 1).containsEntry("failing", 1).containsEntry("last", 1);
+
+        // Once a booster has been fetched it can be queued again
+        fetcher.submit(failing);
+        fetcher.submit(new Booster(Collections.singletonMap("name", "later"), content));
+        softly.assertThat(content.await("later", 1)).isTrue();
+        softly.assertThat(fetches).containsEntry("failing", 2);
+
+        // Speculative fetches don't count as accesses, unlike asking for the content
+        softly.assertThat(content.accessed).isEmpty();
+        last.content();
+        softly.assertThat(content.accessed).containsExactly("last");
+    }
+
+    private class Fetcher implements BoosterFetcher, ContentAccessListener {
+        final List<String> accessed = new CopyOnWriteArrayList<>();
+
+        @NotNull
+        @Override
+        public CompletableFuture<Path> fetchBoosterContent(@NotNull Booster booster) {
+            String name = booster.getName();
+            CompletableFuture<Path> result = new CompletableFuture<>();
+            try {
+                if ("blocking".equals(name)) {
+                    started.countDown();
+                    release.await();
+                }
+                if ("failing".equals(name)) {
+                    result.completeExceptionally(new IOException("Repository not found"));
+                } else {
+                    result.complete(Paths.get(name));
+                }
+            } catch (InterruptedException e) {
+                result.completeExceptionally(e);
+            }
+            synchronized (fetches) {
+                fetches.merge(name, 1, Integer::sum);
+                fetches.notifyAll();
+            }
+            return result;
+        }
+
+        @Override
+        public void contentAccessed(@NotNull Booster booster) {
+            accessed.add(booster.getName());
+        }
+
+        boolean await(String name, int count) throws InterruptedException {
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            synchronized (fetches) {
+                while (fetches.getOrDefault(name, 0) < count && System.nanoTime() < end) {
+                    fetches.wait(100);
+                }
+                return fetches.getOrDefault(name, 0) >= count;
+            }
+        }
+    }
+}
@@ -7,18 +7,45 @@
 
 package io.fabric8.launcher.booster.catalog.rhoar;
 
+import io.fabric8.launcher.booster.ContentTransformer;
+import io.fabric8.launcher.booster.ContentTransformers;
+import io.fabric8.launcher.booster.catalog.CatalogExport;
+import io.fabric8.launcher.booster.catalog.JsonExport;
+import io.fabric8.launcher.booster.catalog.Page;
 import io.fabric8.launcher.booster.catalog.utils.JsonKt;
 import org.assertj.core.api.JUnitSoftAssertions;
 import org.junit.Rule;
+import org.json.simple.parser.JSONParser;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static io.fabric8.launcher.booster.catalog.LauncherConfiguration.PropertyName.LAUNCHER_BOOSTER_CATALOG_REPOSITORY;
 
@@ -27,6 +54,9 @@ public class RhoarBoosterCatalogServiceTest {
     @Rule
     public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     @Nullable
     private static RhoarBoosterCatalogService defaultService;
 
@@ -54,6 +84,29 @@ public class RhoarBoosterCatalogServiceTest {
         softly.assertThat(missions.get("configmap").isSuggested()).isFalse();
     }
 
+    @Test
+    public void testTypedAttributes() throws Exception {
+        Map<String, Object> data = boosterData("rest-http", "vert.x", "community", null);
+        data.put("ignore", "TRUE");
+        data.put("description", Collections.singletonList("not a string"));
+        RhoarBooster booster = new RhoarBooster(data, buildDefaultCatalogService());
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(AbstractCategory.KEY_SUGGESTED, "true");
+        metadata.put(Runtime.KEY_PIPELINE_PLATFORM, "node");
+        metadata.put("custom", 42);
+        Runtime runtime = new Runtime("nodejs", "Node.js", null, metadata);
+
+        softly.assertThat(booster.isIgnore()).isTrue();
+        softly.assertThat(booster.getName()).isEqualTo("Test booster");
+        softly.assertThat(booster.getDescription()).isEqualTo("No description available");
+        softly.assertThat(booster.getGitRef()).isEqualTo("rest-http-vert.x-community");
+        softly.assertThat(booster.getData()).containsEntry("description", Collections.singletonList("not a string"));
+        softly.assertThat(runtime.isSuggested()).isTrue();
+        softly.assertThat(runtime.getPipelinePlatform()).isEqualTo("node");
+        softly.assertThat(runtime.getMetadata()).containsEntry("custom", 42);
+        softly.assertThat(new Mission("rest-http").isSuggested()).isFalse();
+    }
+
     @Test
     public void testVertxVersions() throws Exception {
         RhoarBoosterCatalogService service = buildDefaultCatalogService();
@@ -140,6 +193,333 @@ public class RhoarBoosterCatalogServiceTest {
         service.index().get();
     }
 
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        AtomicReference<String> ref = new AtomicReference<>("v1");
+        CountDownLatch release = new CountDownLatch(1);
+        Path root = folder.newFolder("stale-content").toPath();
+        RhoarBoosterCatalogService service = new RhoarBoosterCatalogService.Builder()
+                .catalogProvider(() -> Collections.singletonList(boosterData(ref.get())))
+                .metadataProvider(() -> JsonKt.readMetadata(Paths.get("src/test/resources/custom-catalogs/test-metadata.json")))
+                .sourceProvider(b -> {
+                    if (!"v1".equals(b.getGitRef())) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    return root.resolve(b.getGitRef());
+                })
+                .staleWhileRevalidate(Duration.ofMinutes(1))
+                .build();
+        service.index().get();
+        Path v1 = service.getBoosters().iterator().next().content().get();
+        Files.createDirectories(v1);
+
+        ref.set("v2");
+        service.reindex().get();
+        RhoarBooster booster = service.getBoosters().iterator().next();
+
+        // We get the old content immediately while the new one is being fetched
+        softly.assertThat(booster.content()).isCompletedWithValue(v1);
+
+        // Once the new content is available it replaces the old one
+        release.countDown();
+        long timeout = System.currentTimeMillis() + 5000;
+        while (booster.content().get().equals(v1) && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        softly.assertThat(booster.content().get()).isEqualTo(root.resolve("v2"));
+    }
+
+    @Test
+    public void testReleasedContentIsKeptWhileCopied() throws Exception {
+        AtomicReference<String> ref = new AtomicReference<>("v1");
+        Path root = folder.newFolder("released").toPath();
+        RhoarBoosterCatalogService service = new RhoarBoosterCatalogService.Builder()
+                .catalogProvider(() -> Collections.singletonList(boosterData(ref.get())))
+                .metadataProvider(() -> JsonKt.readMetadata(Paths.get("src/test/resources/custom-catalogs/test-metadata.json")))
+                .sourceProvider(b -> {
+                    Path content = root.resolve(".boosters").resolve(b.getId()).resolve(b.getGitRef());
+                    try {
+                        Files.createDirectories(content);
+                        Files.write(content.resolve("pom.xml"), b.getGitRef().getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return content;
+                })
+                .deduplicateContent(true)
+                .build();
+        service.index().get();
+        RhoarBooster booster = service.getBoosters().iterator().next();
+        Path v1 = booster.content().get();
+
+        // A copy that's still busy with the old version
+        CountDownLatch copying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ContentTransformer blocking = (input, output) -> {
+            copying.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            ContentTransformers.replacing(Collections.emptyMap()).transform(input, output);
+        };
+        Path target = root.resolve("project");
+        CompletableFuture<Path> copy = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.copy(booster, target, Collections.singletonMap("pom.xml", blocking));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        softly.assertThat(copying.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // The new version replaces the old one, which gets released on the next re-index
+        ref.set("v2");
+        service.reindex().get();
+        Path v2 = service.getBoosters().iterator().next().content().get();
+        service.reindex().get();
+        softly.assertThat(v2).isNotEqualTo(v1);
+        softly.assertThat(v1.resolve("pom.xml")).hasContent("v1");
+
+        // Once the copy is done the old version gets deleted
+        release.countDown();
+        softly.assertThat(copy.get(10, TimeUnit.SECONDS)).isEqualTo(v1);
+        softly.assertThat(target.resolve("pom.xml")).hasContent("v1");
+        softly.assertThat(v1).doesNotExist();
+        softly.assertThat(v2.resolve("pom.xml")).hasContent("v2");
+    }
+
+    @Test
+    public void testCategoryTree() throws Exception {
+        List<Map<String, Object>> catalog = new ArrayList<>();
+        catalog.add(boosterData("rest-http", "vert.x", "community", null));
+        catalog.add(boosterData("rest-http", "vert.x", "redhat", "openshift-online"));
+        catalog.add(boosterData("rest-http", "spring-boot", "current-community", "!openshift-online"));
+        catalog.add(boosterData("configmap", "vert.x", "community", "none"));
+        catalog.add(boosterData("configmap", "spring-boot", "current-community", Arrays.asList("local", "OpenShift-Online")));
+        RhoarBoosterCatalogService service = new RhoarBoosterCatalogService.Builder()
+                .catalogProvider(() -> catalog)
+                .metadataProvider(() -> JsonKt.readMetadata(Paths.get("src/test/resources/custom-catalogs/test-metadata.json")))
+                .sourceProvider(b -> Paths.get("target", b.getId()))
+                .build();
+        service.index().get();
+        List<Mission> missions = new ArrayList<>(service.getMissions());
+        missions.add(null);
+        List<Runtime> runtimes = new ArrayList<>(service.getRuntimes());
+        runtimes.add(null);
+
+        for (Mission m : missions) {
+            for (Runtime r : runtimes) {
+                for (String runsOn : Arrays.asList(null, "", "openshift-online", "LOCAL", "elsewhere")) {
+                    Predicate<RhoarBooster> filter = BoosterPredicates.withMission(m)
+                            .and(BoosterPredicates.withRuntime(r))
+                            .and(BoosterPredicates.withRunsOn(runsOn));
+                    // Wrapping the filter makes the catalog go through all the boosters
+                    Predicate<RhoarBooster> opaque = filter::test;
+                    softly.assertThat(service.getMissions(filter)).containsExactlyElementsOf(service.getMissions(opaque));
+                    softly.assertThat(service.getRuntimes(filter)).containsExactlyElementsOf(service.getRuntimes(opaque));
+                    softly.assertThat(service.getVersions(filter)).containsExactlyElementsOf(service.getVersions(opaque));
+                }
+            }
+        }
+        softly.assertThat(service.getMissions(BoosterPredicates.withRunsOn("local")))
+                .isSameAs(service.getMissions(BoosterPredicates.withRunsOn("local")));
+        softly.assertThat(service.getVersions(new Mission("rest-http"), new Runtime("vert.x"))).hasSize(2);
+        softly.assertThat(service.getRuntimes(BoosterPredicates.withRunsOn("openshift-online")))
+                .containsOnly(new Runtime("spring-boot"), new Runtime("vert.x"));
+    }
+
+    @Test
+    public void testExport() throws Exception {
+        AtomicReference<String> ref = new AtomicReference<>("v1");
+        RhoarBoosterCatalogService service = new RhoarBoosterCatalogService.Builder()
+                .catalogProvider(() -> Collections.singletonList(boosterData(ref.get())))
+                .metadataProvider(() -> JsonKt.readMetadata(Paths.get("src/test/resources/custom-catalogs/test-metadata.json")))
+                .sourceProvider(b -> Paths.get("target", b.getId()))
+                .build();
+        softly.assertThat(service.export()).isNull();
+        service.index().get();
+        CatalogExport export = service.export();
+        JsonExport catalog = export.getCatalog();
+        RhoarBooster booster = service.getBoosters().iterator().next();
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        catalog.writeTo(json, false);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        catalog.writeTo(gzipped, true);
+        softly.assertThat(new JSONParser().parse(json.toString("UTF-8"))).isEqualTo(Collections.singletonList(booster.getExportableData()));
+        softly.assertThat(new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray()))).hasSameContentAs(new ByteArrayInputStream(json.toByteArray()));
+        softly.assertThat(catalog.contentLength(false)).isEqualTo(json.size());
+        softly.assertThat(service.export()).isSameAs(export);
+        softly.assertThat(export.getCatalog()).isSameAs(catalog);
+        softly.assertThat(export.booster(booster.getId())).isSameAs(export.booster(booster.getId()));
+        softly.assertThat(export.booster("unknown")).isNull();
+        softly.assertThat(catalog.isNotModified(catalog.getEtag())).isTrue();
+        softly.assertThat(catalog.isNotModified("\"other\", W/" + catalog.getEtag())).isTrue();
+        softly.assertThat(catalog.isNotModified(null)).isFalse();
+
+        ref.set("v2");
+        service.reindex().get();
+
+        softly.assertThat(service.export().getCatalog().getEtag()).isNotEqualTo(catalog.getEtag());
+        softly.assertThat(service.export().getCatalog().isNotModified(catalog.getEtag())).isFalse();
+    }
+
+    @Test
+    public void testChangesSince() throws Exception {
+        List<Map<String, Object>> catalog = new ArrayList<>();
+        catalog.add(boosterData("rest-http", "vert.x", "community", null));
+        catalog.add(boosterData("configmap", "vert.x", "community", null));
+        catalog.add(boosterData("crud", "vert.x", "community", null));
+        RhoarBoosterCatalogService service = new RhoarBoosterCatalogService.Builder()
+                .catalogProvider(() -> new ArrayList<>(catalog))
+                .metadataProvider(() -> JsonKt.readMetadata(Paths.get("src/test/resources/custom-catalogs/test-metadata.json")))
+                .sourceProvider(b -> Paths.get("target", b.getId()))
+                .snapshotHistory(2)
+                .build();
+        softly.assertThat(service.changesSince(0).isFullResyncRequired()).isTrue();
+        service.index().get();
+        long v1 = service.getSnapshot().getVersion();
+
+        catalog.remove(2);
+        Map<String, Object> renamed = new HashMap<>(catalog.get(1));
+        renamed.put("name", "Renamed booster");
+        catalog.set(1, renamed);
+        catalog.add(boosterData("rest-http", "spring-boot", "current-community", null));
+        service.reindex().get();
+        RhoarCatalogChanges changes = service.changesSince(v1);
+
+        softly.assertThat(changes.isFullResyncRequired()).isFalse();
+        softly.assertThat(changes.getFromVersion()).isEqualTo(v1);
+        softly.assertThat(changes.getToVersion()).isEqualTo(service.getSnapshot().getVersion()).isGreaterThan(v1);
+        softly.assertThat(changes.getBoosters().getAdded()).extracting(RhoarBooster::getId).containsOnly("rest-http-spring-boot-current-community");
+        softly.assertThat(changes.getBoosters().getRemoved()).containsOnly("crud-vert.x-community");
+        softly.assertThat(changes.getBoosters().getModified()).extracting(RhoarBooster::getName).containsOnly("Renamed booster");
+        softly.assertThat(changes.getMissions().getAdded()).isEmpty();
+        softly.assertThat(changes.getMissions().getRemoved()).containsOnly("crud");
+        softly.assertThat(changes.getRuntimes().getAdded()).containsOnly(new Runtime("spring-boot"));
+        softly.assertThat(changes.getVersions().getAdded()).containsOnly(new Version("current-community"));
+        softly.assertThat(service.changesSince(v1)).isSameAs(changes);
+        softly.assertThat(service.changesSince(changes.getToVersion()).getBoosters().isEmpty()).isTrue();
+
+        // Only the last two snapshots are remembered
+        service.reindex().get();
+        softly.assertThat(service.changesSince(v1).isFullResyncRequired()).isTrue();
+        softly.assertThat(service.changesSince(changes.getToVersion()).isFullResyncRequired()).isFalse();
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        List<Map<String, Object>> catalog = new ArrayList<>(JsonKt.readCatalog(Paths.get("src/test/resources/custom-catalogs/test-catalog.json")));
+        RhoarBoosterCatalogService service = defaultCatalogBuilder()
+                .catalogProvider(() -> new ArrayList<>(catalog))
+                .build();
+        service.index().get();
+        List<RhoarBooster> expected = service.getBoosters().stream()
+                .sorted(Comparator.comparing((RhoarBooster b) -> b.getRuntime().getName())
+                                .thenComparing(b -> b.getVersion().getName())
+                                .thenComparing(b -> b.getMission().getName())
+                                .thenComparing(RhoarBooster::getName, String.CASE_INSENSITIVE_ORDER)
+                                .thenComparing(RhoarBooster::getId))
+                .collect(Collectors.toList());
+
+        softly.assertThat(service.stream(SortKey.RUNTIME)).containsExactlyElementsOf(expected);
+        softly.assertThat(service.query(SortKey.RUNTIME, 20, 10).getItems()).containsExactlyElementsOf(expected.subList(20, 30));
+        softly.assertThat(service.query(SortKey.RUNTIME, expected.size() - 5, 10).getCursor()).isNull();
+
+        Predicate<RhoarBooster> vertx = BoosterPredicates.withRuntime(new Runtime("vert.x"));
+        List<RhoarBooster> expectedVertx = expected.stream().filter(vertx).collect(Collectors.toList());
+        softly.assertThat(service.query(SortKey.RUNTIME, 2, 3, vertx).getItems()).containsExactlyElementsOf(expectedVertx.subList(2, 5));
+
+        List<RhoarBooster> paged = new ArrayList<>();
+        Page<RhoarBooster> page = service.query(SortKey.RUNTIME, (String) null, 7, vertx);
+        paged.addAll(page.getItems());
+        while (page.getCursor() != null) {
+            page = service.query(SortKey.RUNTIME, page.getCursor(), 7, vertx);
+            paged.addAll(page.getItems());
+        }
+        softly.assertThat(paged).containsExactlyElementsOf(expectedVertx);
+
+        // A cursor continues where it left off after re-indexing
+        Page<RhoarBooster> first = service.query(SortKey.NAME, (String) null, 10);
+        RhoarBooster removed = service.query(SortKey.NAME, first.getCursor(), 1).getItems().get(0);
+        catalog.removeIf(data -> new RhoarBooster(data, service).getId().equals(removed.getId()));
+        service.reindex().get();
+        List<RhoarBooster> byName = service.stream(SortKey.NAME).collect(Collectors.toList());
+        Page<RhoarBooster> second = service.query(SortKey.NAME, first.getCursor(), 10);
+        softly.assertThat(second.getItems()).extracting(RhoarBooster::getId)
+                .containsExactlyElementsOf(byName.subList(10, 20).stream().map(RhoarBooster::getId).collect(Collectors.toList()));
+        softly.assertThat(second.getSnapshotVersion()).isEqualTo(service.getSnapshot().getVersion());
+        softly.assertThatThrownBy(() -> service.query(SortKey.MISSION, first.getCursor(), 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        List<Map<String, Object>> catalog = new ArrayList<>();
+        catalog.add(boosterData("rest-http", "vert.x", "community", "openshift-online"));
+        catalog.add(boosterData("configmap", "vert.x", "community", null));
+        catalog.add(boosterData("configmap", "spring-boot", "current-community", null));
+        catalog.get(0).put("name", "Vert.x HTTP example");
+        catalog.get(1).put("name", "Vert.x ConfigMap example");
+        catalog.get(1).put("description", "Shows configuration through an HTTP endpoint");
+        catalog.get(2).put("name", "Spring Boot ConfigMap example");
+        RhoarBoosterCatalogService service = new RhoarBoosterCatalogService.Builder()
+                .catalogProvider(() -> catalog)
+                .metadataProvider(() -> JsonKt.readMetadata(Paths.get("src/test/resources/custom-catalogs/test-metadata.json")))
+                .sourceProvider(b -> Paths.get("target", b.getId()))
+                .searchMetadata(Collections.singletonList("runsOn"))
+                .build();
+        service.index().get();
+
+        // The index was built while indexing
+        SearchIndex index = service.getSnapshot().derive(SearchIndex.class, s -> {
+            throw new AssertionError("Search index built after indexing");
+        });
+        softly.assertThat(index).isNotNull();
+
+        // A match in the name ranks above one in the description
+        softly.assertThat(service.search("http")).extracting(RhoarBooster::getName)
+                .containsExactly("Vert.x HTTP example", "Vert.x ConfigMap example");
+        softly.assertThat(service.search("CONFIG vert")).extracting(RhoarBooster::getName)
+                .containsExactly("Vert.x ConfigMap example");
+        softly.assertThat(service.search("configmap", BoosterPredicates.withRuntime(new Runtime("spring-boot"))))
+                .extracting(RhoarBooster::getName).containsExactly("Spring Boot ConfigMap example");
+        softly.assertThat(service.search("online")).extracting(RhoarBooster::getName).containsExactly("Vert.x HTTP example");
+        softly.assertThat(service.search("graphql")).isEmpty();
+        softly.assertThat(service.search(" ")).hasSize(3);
+    }
+
+    private static Map<String, Object> boosterData(String mission, String runtime, String version, @Nullable Object runsOn) {
+        Map<String, Object> data = boosterData(mission + "-" + runtime + "-" + version);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> metadata = (Map<String, Object>) data.get("metadata");
+        metadata.put("mission", mission);
+        metadata.put("runtime", runtime);
+        metadata.put("version", version);
+        if (runsOn != null) {
+            metadata.put("runsOn", runsOn);
+        }
+        return data;
+    }
+
+    private static Map<String, Object> boosterData(String ref) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("mission", "rest-http");
+        metadata.put("runtime", "vert.x");
+        metadata.put("version", "community");
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", "Test booster");
+        data.put("repo", "https://example.com/booster.git");
+        data.put("ref", ref);
+        data.put("metadata", metadata);
+        return data;
+    }
+
     private RhoarBoosterCatalogService.Builder defaultCatalogBuilder() {
         return new RhoarBoosterCatalogService.Builder()
                 .catalogProvider(() -> JsonKt.readCatalog(Paths.get("src/test/resources/custom-catalogs/test-catalog.json")))
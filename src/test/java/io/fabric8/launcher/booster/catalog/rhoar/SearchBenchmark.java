@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog.rhoar;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Compares searching a synthetic catalog of 100k boosters using the search index with
+ * going through all the boosters and checking their texts with contains(). Run it as a
+ * plain Java main.
+ */
+public class SearchBenchmark {
+
+    private static final int BOOSTERS = 100_000;
+
+    private static final int RUNS = 5;
+
+    private static final String[] WORDS = {
+            "http", "rest", "api", "cache", "circuit", "breaker", "config", "map", "crud", "database",
+            "health", "check", "messaging", "secured", "tracing", "istio", "example", "service", "client", "server",
+            "reactive", "stream", "gateway", "metrics", "logging", "kafka", "amqp", "jdbc", "oauth", "keycloak"};
+
+    private static final String[] QUERIES = {"http", "circ", "config map", "kafka stream", "secured oauth", "zzz"};
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        List<Map<String, Object>> catalog = new ArrayList<>(BOOSTERS);
+        for (int i = 0; i < BOOSTERS; i++) {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("mission", WORDS[random.nextInt(WORDS.length)]);
+            metadata.put("runtime", WORDS[random.nextInt(WORDS.length)]);
+            // Without a version the id isn't made out of the categories, which would make most boosters collide
+            Map<String, Object> data = new HashMap<>();
+            data.put("name", sentence(random, 3) + " " + i);
+            data.put("description", sentence(random, 12));
+            data.put("repo", "https://example.com/booster" + i + ".git");
+            data.put("ref", "master");
+            data.put("metadata", metadata);
+            catalog.add(data);
+        }
+        RhoarBoosterCatalogService service = new RhoarBoosterCatalogService.Builder()
+                .catalogProvider(() -> catalog)
+                .metadataProvider(Collections::emptyMap)
+                .sourceProvider(b -> Paths.get("target", b.getId()))
+                .build();
+        service.index().get();
+
+        long start = System.nanoTime();
+        service.search("warm up");
+        System.out.printf("%-12s %8d ms%n", "index build", (System.nanoTime() - start) / 1_000_000);
+
+        for (String query : QUERIES) {
+            long indexed = Long.MAX_VALUE;
+            long scanned = Long.MAX_VALUE;
+            int matches = 0;
+            for (int run = 0; run < RUNS; run++) {
+                start = System.nanoTime();
+                matches = service.search(query).size();
+                indexed = Math.min(indexed, System.nanoTime() - start);
+                start = System.nanoTime();
+                scan(service, query);
+                scanned = Math.min(scanned, System.nanoTime() - start);
+            }
+            System.out.printf("%-14s %7d matches, index %8.2f ms, scan %8.2f ms%n",
+                              "'" + query + "'", matches, indexed / 1e6, scanned / 1e6);
+        }
+    }
+
+    // What it takes to search without the index, including putting the matches in some order
+    private static List<RhoarBooster> scan(RhoarBoosterCatalogService service, String query) {
+        String[] words = query.toLowerCase(Locale.ROOT).split(" ");
+        return service.getBoosters(b -> {
+            String text = (b.getName() + " " + b.getDescription() + " " + b.getMission().getName() + " "
+                    + b.getRuntime().getName()).toLowerCase(Locale.ROOT);
+            for (String word : words) {
+                if (!text.contains(word)) {
+                    return false;
+                }
+            }
+            return true;
+        }).stream().sorted(Comparator.comparing(RhoarBooster::getName)).collect(Collectors.toList());
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+}
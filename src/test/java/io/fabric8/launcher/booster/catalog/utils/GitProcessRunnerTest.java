@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+
+package io.fabric8.launcher.booster.catalog.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.assertj.core.api.JUnitSoftAssertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class GitProcessRunnerTest {
+
+    @Rule
+    public final JUnitSoftAssertions softly = new JUnitSoftAssertions();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCapturedOutputIsBounded() throws Exception {
+        Path git = fakeGit("for i in $(seq 1 1000); do echo \"line $i\"; echo \"error $i\" >&2; done");
+        GitProcessRunner runner = new GitProcessRunner(1, Duration.ofSeconds(10), 100, git.toString());
+
+        GitResult result = runner.run(Collections.singletonList("status"));
+
+        softly.assertThat(result.getExitCode()).isEqualTo(0);
+        softly.assertThat(result.getStdout()).hasSize(100).endsWith("line 1000\n");
+        softly.assertThat(result.getStderr()).hasSize(100).endsWith("error 1000\n");
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        Path git = fakeGit("sleep 30");
+        GitProcessRunner runner = new GitProcessRunner(1, Duration.ofMillis(200), 100, git.toString());
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> runner.run(Collections.singletonList("clone"))).isInstanceOf(IOException.class).hasMessageContaining("timed out");
+        softly.assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(10);
+    }
+
+    @Test
+    public void testCancelKillsProcess() throws Exception {
+        Path marker = folder.getRoot().toPath().resolve("finished");
+        Path git = fakeGit("sleep 1; touch " + marker);
+        GitProcessRunner runner = new GitProcessRunner(1, Duration.ofSeconds(10), 100, git.toString());
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        CompletableFuture<GitResult> result = FuturesKt.supplyInterruptibly(ForkJoinPool.commonPool(), () -> {
+            started.countDown();
+            try {
+                return runner.run(Collections.singletonList("clone"));
+            } catch (IOException e) {
+                failure.set(e);
+                throw new RuntimeException(e);
+            } finally {
+                done.countDown();
+            }
+        });
+        started.await();
+        Thread.sleep(100);
+        result.cancel(true);
+
+        softly.assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        softly.assertThat(failure.get()).hasMessage("Interrupted");
+        Thread.sleep(1500);
+        softly.assertThat(marker).doesNotExist();
+    }
+
+    @Test
+    public void testConcurrentProcessesAreLimited() throws Exception {
+        Path git = fakeGit("sleep 0.5");
+        GitProcessRunner runner = new GitProcessRunner(1, Duration.ofSeconds(10), 100, git.toString());
+
+        long start = System.nanoTime();
+        CompletableFuture<GitResult> first = CompletableFuture.supplyAsync(() -> run(runner));
+        CompletableFuture<GitResult> second = CompletableFuture.supplyAsync(() -> run(runner));
+        CompletableFuture.allOf(first, second).get();
+
+        softly.assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(1000);
+    }
+
+    private static GitResult run(GitProcessRunner runner) {
+        try {
+            return runner.run(Collections.singletonList("fetch"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Path fakeGit(String script) throws IOException {
+        Path git = folder.getRoot().toPath().resolve("git");
+        Files.write(git, ("#!/bin/sh\n" + script + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.setPosixFilePermissions(git, PosixFilePermissions.fromString("rwxr-xr-x"));
+        return git;
+    }
+}